@@ -0,0 +1,148 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.*;
+
+/**
+ * A coarse, precomputed picture of which parts of the airspace can reach one another
+ *
+ * The free cells of the AirspaceGrid are grouped into connected components, and two points can only be
+ * joined by a route if their cells share a component.
+ *
+ * Every approximation made here errs on the side of "reachable", so a destination is only ever rejected
+ * if the router could not possibly have found a route to it
+ */
+public class AirspaceConnectivity {
+    private final int UNLABELLED = -1;
+
+    private final NamedRegion centralArea;
+    private final AirspaceGrid grid;
+
+    // Component labels for cells a drone can occupy while outside the central area
+    private final int[] outerLabels;
+    // Component labels for cells a drone can occupy while inside the central area
+    private final int[] innerLabels;
+    // For each outer component, the inner components that can be entered from it
+    private final HashMap<Integer, Set<Integer>> entrances = new HashMap<>();
+
+    public AirspaceConnectivity(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        this(centralArea, new AirspaceGrid(centralArea, noFlyZones));
+    }
+
+    AirspaceConnectivity(NamedRegion centralArea, AirspaceGrid grid) {
+        this.centralArea = centralArea;
+        this.grid = grid;
+
+        boolean[] outer = new boolean[grid.size()];
+        boolean[] inner = new boolean[grid.size()];
+
+        for (int cell = 0; cell < grid.size(); cell++) {
+            outer[cell] = !grid.blocked[cell] && grid.outsideCentral[cell];
+            inner[cell] = !grid.blocked[cell] && grid.insideCentral[cell];
+        }
+
+        this.outerLabels = labelComponents(outer);
+        this.innerLabels = labelComponents(inner);
+
+        // A drone can cross into the central area wherever an outer cell touches an inner one
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (outerLabels[cell] == UNLABELLED) {continue;}
+
+            for (int neighbour : grid.neighbourhood(cell)) {
+                if (innerLabels[neighbour] != UNLABELLED) {
+                    entrances.computeIfAbsent(outerLabels[cell], k -> new HashSet<>()).add(innerLabels[neighbour]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines whether the router could possibly find a route from start to dest, honouring both
+     * the no-fly zones and the rule that a drone inside the central area may not leave it
+     *
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @return: False if no route can exist, true if one might
+     */
+    public boolean isReachable(LngLat start, LngLat dest) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+
+        // The drone finishes once it is close to dest, so anywhere in the cells around it will do
+        Set<Integer> destInner = labelsNear(dest, innerLabels);
+
+        if (lngLatHandler.isInCentralArea(start, centralArea)) {
+            // Once in the central area the drone can never leave it
+            return !Collections.disjoint(labelsNear(start, innerLabels), destInner);
+        }
+
+        Set<Integer> startOuter = labelsNear(start, outerLabels);
+
+        // Either the drone stays outside the central area the whole way...
+        if (!Collections.disjoint(startOuter, labelsNear(dest, outerLabels))) {
+            return true;
+        }
+
+        // ...or it finishes inside it, having crossed over from the outside at some point
+        for (int outerLabel : startOuter) {
+            if (!Collections.disjoint(entrances.getOrDefault(outerLabel, Set.of()), destInner)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param position: The position to look around
+     * @param labels: The component labels to read from
+     * @return: The labels of every free cell the drone could occupy one move away from position
+     */
+    private Set<Integer> labelsNear(LngLat position, int[] labels) {
+        Set<Integer> near = new HashSet<>();
+
+        // Anything outside the grid is open airspace, which is the same as the free margin around its edge
+        for (int cell : grid.neighbourhood(grid.cellOf(position))) {
+            if (labels[cell] != UNLABELLED) {
+                near.add(labels[cell]);
+            }
+        }
+
+        return near;
+    }
+
+    /**
+     * Labels each free cell with the connected component it belongs to, using a breadth-first flood fill
+     *
+     * @param free: Whether each cell can be occupied
+     * @return: The component label of each cell, or UNLABELLED for cells which can't be occupied
+     */
+    private int[] labelComponents(boolean[] free) {
+        int[] labels = new int[free.length];
+        Arrays.fill(labels, UNLABELLED);
+
+        int nextLabel = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int seed = 0; seed < free.length; seed++) {
+            if (!free[seed] || labels[seed] != UNLABELLED) {continue;}
+
+            labels[seed] = nextLabel;
+            queue.add(seed);
+
+            while (!queue.isEmpty()) {
+                for (int neighbour : grid.neighbourhood(queue.poll())) {
+                    if (free[neighbour] && labels[neighbour] == UNLABELLED) {
+                        labels[neighbour] = nextLabel;
+                        queue.add(neighbour);
+                    }
+                }
+            }
+
+            nextLabel++;
+        }
+
+        return labels;
+    }
+}
@@ -0,0 +1,143 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The airspace around the central area and no-fly zones, split into square cells the size of a single drone move
+ *
+ * As a move can never travel further than one cell in either direction, a drone in one cell can only ever
+ * move into that cell or one of its eight neighbours, which makes the grid a cheap stand-in for the airspace
+ * when precomputing anything about it
+ */
+class AirspaceGrid {
+    static final double CELL_SIZE = SystemConstants.DRONE_MOVE_DISTANCE;
+    // Free cells left around the edge of the grid, so everything outside the grid joins up. This is wide enough
+    // that the cells next to the edge never touch a region, which lets outside points be clamped onto the edge
+    private final int MARGIN = 3;
+    // Cell edges are nudged outwards by this much so points lying exactly on an edge are never missed
+    private final double EPSILON = 1e-9;
+
+    final int cols;
+    final int rows;
+    private final double minLng;
+    private final double minLat;
+
+    // Each of these errs on the side of the cell being usable: a cell is only blocked if it lies entirely
+    // within a no-fly zone, and a cell on the edge of the central area counts as both inside and outside it
+    final boolean[] blocked;
+    final boolean[] outsideCentral;
+    final boolean[] insideCentral;
+
+    AirspaceGrid(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        // The grid only needs to cover the regions themselves, anything further out is open airspace
+        double lowLng = Double.POSITIVE_INFINITY, highLng = Double.NEGATIVE_INFINITY;
+        double lowLat = Double.POSITIVE_INFINITY, highLat = Double.NEGATIVE_INFINITY;
+
+        ArrayList<NamedRegion> regions = new ArrayList<>(Arrays.asList(noFlyZones));
+        regions.add(centralArea);
+
+        for (NamedRegion region : regions) {
+            for (LngLat vertex : region.vertices()) {
+                lowLng = Math.min(lowLng, vertex.lng());
+                highLng = Math.max(highLng, vertex.lng());
+                lowLat = Math.min(lowLat, vertex.lat());
+                highLat = Math.max(highLat, vertex.lat());
+            }
+        }
+
+        this.minLng = lowLng - MARGIN * CELL_SIZE;
+        this.minLat = lowLat - MARGIN * CELL_SIZE;
+        this.cols = (int) Math.ceil((highLng - lowLng) / CELL_SIZE) + 2 * MARGIN + 1;
+        this.rows = (int) Math.ceil((highLat - lowLat) / CELL_SIZE) + 2 * MARGIN + 1;
+
+        Path2D central = toPolygon(centralArea);
+        Path2D[] noFly = Arrays.stream(noFlyZones).map(AirspaceGrid::toPolygon).toArray(Path2D[]::new);
+
+        this.blocked = new boolean[cols * rows];
+        this.outsideCentral = new boolean[cols * rows];
+        this.insideCentral = new boolean[cols * rows];
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                Rectangle2D cell = new Rectangle2D.Double(
+                        minLng + col * CELL_SIZE - EPSILON, minLat + row * CELL_SIZE - EPSILON,
+                        CELL_SIZE + 2 * EPSILON, CELL_SIZE + 2 * EPSILON);
+
+                blocked[row * cols + col] = Arrays.stream(noFly).anyMatch(zone -> zone.contains(cell));
+                outsideCentral[row * cols + col] = !central.contains(cell);
+                insideCentral[row * cols + col] = central.intersects(cell);
+            }
+        }
+    }
+
+    /**
+     * @return: The total number of cells in the grid
+     */
+    int size() {
+        return cols * rows;
+    }
+
+    /**
+     * @param position: The position to find the cell of
+     * @return: Whether position lies within the grid, rather than in the open airspace around it
+     */
+    boolean contains(LngLat position) {
+        return position.lng() >= minLng && position.lng() < minLng + cols * CELL_SIZE
+                && position.lat() >= minLat && position.lat() < minLat + rows * CELL_SIZE;
+    }
+
+    /**
+     * @param position: The position to find the cell of
+     * @return: The index of the cell containing position, or of the nearest edge cell if it lies outside the grid
+     */
+    int cellOf(LngLat position) {
+        int col = Math.max(0, Math.min(cols - 1, (int) Math.floor((position.lng() - minLng) / CELL_SIZE)));
+        int row = Math.max(0, Math.min(rows - 1, (int) Math.floor((position.lat() - minLat) / CELL_SIZE)));
+
+        return row * cols + col;
+    }
+
+    /**
+     * @param cell: The index of the cell
+     * @return: The indices of the cell and its (up to) eight neighbours, i.e. every cell reachable in one move
+     */
+    int[] neighbourhood(int cell) {
+        int row = cell / cols;
+        int col = cell % cols;
+
+        int[] cells = new int[9];
+        int count = 0;
+
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                cells[count++] = r * cols + c;
+            }
+        }
+
+        return Arrays.copyOf(cells, count);
+    }
+
+    /**
+     * @param region: The region to convert
+     * @return: The region as a polygon, with longitude along the x-axis and latitude along the y-axis
+     */
+    private static Path2D toPolygon(NamedRegion region) {
+        Path2D polygon = new Path2D.Double();
+        polygon.moveTo(region.vertices()[0].lng(), region.vertices()[0].lat());
+
+        for (LngLat vertex : region.vertices()) {
+            polygon.lineTo(vertex.lng(), vertex.lat());
+        }
+
+        polygon.closePath();
+
+        return polygon;
+    }
+}
@@ -0,0 +1,415 @@
+package uk.ed.ac.info;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * The indexes across every day of a DeliveryArchive, kept on disk beside the segments so that a query can go
+ * straight to the records it needs without first reading each day's index file
+ *
+ * Every entry is a key, a day and the offset of a record within that day's segment. The key says what is
+ * indexed as well as the value: an order number, status, validation code or restaurant name, each behind its
+ * own prefix. Entries are kept sorted, so all of them for one key sit together in date order and the last
+ * one for an order number is always its latest record. Each day also has a LENGTH entry giving how much of its
+ * segment the entries cover, which lets the archive spot a day whose segment got ahead of the index.
+ *
+ * The entries live in a sorted base file, index.bin, which is mapped into memory and binary searched, and
+ * a log, index.log, which new entries are appended to. The log is read into memory when the index is opened,
+ * and folded into a new base file once it gets long, so opening the index costs the same however much history
+ * the base holds. Both files carry a generation number, and a log from a different generation to the base has
+ * already been folded into it, so is ignored. Not safe for use by several threads at once
+ */
+class ArchiveIndex {
+    static final char ORDER = 'O';
+    static final char STATUS = 'S';
+    static final char VALIDATION_CODE = 'V';
+    static final char RESTAURANT = 'R';
+    static final String LENGTH = "L";
+
+    private static final String BASE_NAME = "index.bin";
+    private static final String LOG_NAME = "index.log";
+    private static final int BASE_MAGIC = 0x44414942;
+    private static final int LOG_MAGIC = 0x4441494C;
+    private static final int VERSION = 1;
+    // Magic number, version, generation and entry count for the base, the same without the count for the log
+    private static final int BASE_HEADER = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int LOG_HEADER = 2 * Integer.BYTES + Long.BYTES;
+    // The log is folded into the base once it holds this many entries, which caps the cost of reading it in.
+    // Archiving an order adds four entries at most, so this is a few weeks of orders
+    static final int MAX_LOG_ENTRIES = 4096;
+
+    /**
+     * @param key: What the entry indexes, behind the prefix saying what kind of value it is
+     * @param date: The day of the segment holding the record
+     * @param offset: The position of the record within the segment, or for a LENGTH entry the length covered
+     */
+    record Entry(String key, LocalDate date, int offset) {}
+
+    private static final Comparator<Entry> ORDERING = Comparator.comparing(Entry::key)
+            .thenComparing(Entry::date)
+            .thenComparingInt(Entry::offset);
+
+    private final Path directory;
+    private long generation;
+    // The base file, or null if nothing has been folded into one yet
+    private MappedByteBuffer base;
+    private int baseCount;
+    private final TreeSet<Entry> log = new TreeSet<>(ORDERING);
+    // Whether index.log belongs to the current base and can be appended to as it is
+    private boolean logUsable;
+
+    /**
+     * Opens the index files in the directory. Either file may be missing or damaged, in which case the
+     * index starts out without the entries it held, and the archive indexes the days again
+     *
+     * @param directory: The directory holding the segments
+     */
+    ArchiveIndex(Path directory) throws IOException {
+        this.directory = directory;
+
+        long logGeneration = readLog();
+        boolean baseRead = readBase();
+
+        if (!baseRead) {
+            // Any log left over from a damaged base can't be trusted either, and the next base written must
+            // have a generation of its own
+            generation = Math.max(generation, logGeneration) + 1;
+            log.clear();
+            logUsable = false;
+        } else if (logGeneration != generation) {
+            log.clear();
+            logUsable = false;
+        }
+    }
+
+    /**
+     * @param key: The key to look up
+     * @return: The last entry for the key, which for an order number is its latest record, or null if none
+     */
+    Entry last(String key) {
+        Entry after = new Entry(key, LocalDate.MAX, Integer.MAX_VALUE);
+        Entry inLog = log.lower(after);
+        Entry inBase = null;
+
+        int position = lowerBound(after) - 1;
+        if (position >= 0) {
+            inBase = readEntry(position);
+        }
+
+        Entry last = null;
+        for (Entry entry : new Entry[] {inLog, inBase}) {
+            if (entry != null && entry.key().equals(key) && (last == null || ORDERING.compare(entry, last) > 0)) {
+                last = entry;
+            }
+        }
+
+        return last;
+    }
+
+    /**
+     * @param key: The key to look up
+     * @param from: The first day to include
+     * @param to: The last day to include
+     * @return: Every entry for the key between from and to inclusive, in date and then offset order
+     */
+    List<Entry> find(String key, LocalDate from, LocalDate to) {
+        Entry first = new Entry(key, from, Integer.MIN_VALUE);
+        Entry last = new Entry(key, to, Integer.MAX_VALUE);
+        TreeSet<Entry> found = new TreeSet<>(ORDERING);
+
+        for (int position = lowerBound(first); position < baseCount; position++) {
+            Entry entry = readEntry(position);
+            if (ORDERING.compare(entry, last) > 0) {break;}
+            found.add(entry);
+        }
+        found.addAll(log.subSet(first, true, last, true));
+
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * @return: How much of each day's segment the entries cover, from the LENGTH entries
+     */
+    Map<LocalDate, Integer> lengths() {
+        HashMap<LocalDate, Integer> lengths = new HashMap<>();
+
+        // Sorted by offset within each day, so the longest length is the one left
+        for (Entry entry : find(LENGTH, LocalDate.MIN, LocalDate.MAX)) {
+            lengths.put(entry.date(), entry.offset());
+        }
+
+        return lengths;
+    }
+
+    /**
+     * Adds the entries to the log, or folds the log into a new base if that would make it too long. The
+     * entries are written in one go, so a crash can only ever leave part of the last one at the end of the log
+     *
+     * @param entries: The entries to add, which should end with the LENGTH entry for the day they cover
+     */
+    void add(List<Entry> entries) throws IOException {
+        if (log.size() + entries.size() > MAX_LOG_ENTRIES) {
+            rewrite(Set.of(), entries);
+            return;
+        }
+
+        if (!logUsable) {
+            writeEmptyLog();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (Entry entry : entries) {
+            writeEntry(output, entry);
+        }
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOG_NAME), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        log.addAll(entries);
+    }
+
+    /**
+     * Drops every entry for the given days and adds the new ones in their place, e.g. once a day's segment has
+     * been compacted and all its records have moved. This always writes a new base
+     *
+     * @param days: The days to replace, each with every entry it should now have
+     */
+    void replaceDays(Map<LocalDate, List<Entry>> days) throws IOException {
+        rewrite(days.keySet(), days.values().stream().flatMap(List::stream).toList());
+    }
+
+    /**
+     * Writes a new base holding the old base and the log, less any entries for the dropped days, plus the
+     * added entries, then starts a new, empty log. The base goes first, so a crash in between leaves a log
+     * from the old generation, which is ignored as everything in it is already in the new base
+     *
+     * @param dropped: The days to leave out every existing entry for
+     * @param added: The entries to add
+     */
+    private void rewrite(Set<LocalDate> dropped, List<Entry> added) throws IOException {
+        TreeSet<Entry> pending = new TreeSet<>(ORDERING);
+        for (Entry entry : log) {
+            if (!dropped.contains(entry.date())) {
+                pending.add(entry);
+            }
+        }
+        pending.addAll(added);
+
+        // The entries are merged in order from the base and everything pending, so nothing needs sorting
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        ArrayList<Integer> positions = new ArrayList<>();
+
+        for (int position = 0; position < baseCount; position++) {
+            Entry entry = readEntry(position);
+            if (dropped.contains(entry.date())) {continue;}
+
+            while (!pending.isEmpty() && ORDERING.compare(pending.first(), entry) <= 0) {
+                Entry next = pending.pollFirst();
+                if (!next.equals(entry)) {
+                    positions.add(output.size());
+                    writeEntry(output, next);
+                }
+            }
+
+            positions.add(output.size());
+            writeEntry(output, entry);
+        }
+        for (Entry entry : pending) {
+            positions.add(output.size());
+            writeEntry(output, entry);
+        }
+
+        long nextGeneration = generation + 1;
+        Path temporary = directory.resolve(BASE_NAME + ".tmp");
+        int entriesStart = BASE_HEADER + positions.size() * Integer.BYTES;
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(entriesStart);
+            header.putInt(BASE_MAGIC).putInt(VERSION).putLong(nextGeneration).putInt(positions.size());
+            for (int position : positions) {
+                header.putInt(entriesStart + position);
+            }
+            header.flip();
+
+            for (ByteBuffer buffer : new ByteBuffer[] {header, ByteBuffer.wrap(bytes.toByteArray())}) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        }
+
+        Files.move(temporary, directory.resolve(BASE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        generation = nextGeneration;
+        readBase();
+        log.clear();
+        writeEmptyLog();
+    }
+
+    /**
+     * Maps the base file into memory
+     *
+     * @return: Whether there was a usable base, or none at all, which is just an empty index. False if the base
+     *          was damaged or from another layout
+     */
+    private boolean readBase() throws IOException {
+        Path path = directory.resolve(BASE_NAME);
+        base = null;
+        baseCount = 0;
+
+        if (!Files.exists(path)) {
+            generation = 0;
+            return true;
+        }
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (mapped.limit() < BASE_HEADER || mapped.getInt(0) != BASE_MAGIC || mapped.getInt(Integer.BYTES) != VERSION) {
+            return false;
+        }
+
+        int count = mapped.getInt(2 * Integer.BYTES + Long.BYTES);
+        if (count < 0 || BASE_HEADER + (long) count * Integer.BYTES > mapped.limit()) {
+            return false;
+        }
+
+        base = mapped;
+        baseCount = count;
+        generation = mapped.getLong(2 * Integer.BYTES);
+        return true;
+    }
+
+    /**
+     * Reads every complete entry in the log into memory, cutting off any partial entry left at the end
+     *
+     * @return: The generation the log belongs to, or -1 if there's no usable log
+     */
+    private long readLog() throws IOException {
+        Path path = directory.resolve(LOG_NAME);
+        logUsable = false;
+
+        if (!Files.exists(path)) {
+            return -1;
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (bytes.limit() < LOG_HEADER || bytes.getInt(0) != LOG_MAGIC || bytes.getInt(Integer.BYTES) != VERSION) {
+            return -1;
+        }
+
+        int complete = LOG_HEADER;
+        bytes.position(LOG_HEADER);
+
+        try {
+            while (bytes.hasRemaining()) {
+                log.add(readEntry(bytes));
+                complete = bytes.position();
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // Only the last entry can be cut short, everything before it is complete
+        }
+
+        if (complete < bytes.limit()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+
+        logUsable = true;
+        return bytes.getLong(2 * Integer.BYTES);
+    }
+
+    /**
+     * Replaces the log with an empty one for the current generation. Like the base, it is written beside the
+     * old one and moved over it
+     */
+    private void writeEmptyLog() throws IOException {
+        Path temporary = directory.resolve(LOG_NAME + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(temporary))) {
+            output.writeInt(LOG_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(generation);
+        }
+
+        Files.move(temporary, directory.resolve(LOG_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        logUsable = true;
+    }
+
+    /**
+     * @param probe: The entry to search for
+     * @return: The position in the base of the first entry not before probe, or the entry count if there is none
+     */
+    private int lowerBound(Entry probe) {
+        int low = 0;
+        int high = baseCount;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (ORDERING.compare(readEntry(middle), probe) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @param position: The position of the entry in the base, from 0 up to the entry count
+     * @return: The entry
+     */
+    private Entry readEntry(int position) {
+        return readEntry(base.duplicate().position(base.getInt(BASE_HEADER + position * Integer.BYTES)));
+    }
+
+    /**
+     * @param buffer: The buffer to read from, positioned at the start of an entry, which this moves past it
+     * @return: The entry
+     */
+    private static Entry readEntry(ByteBuffer buffer) {
+        byte[] key = new byte[buffer.getShort()];
+        buffer.get(key);
+        LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+        int offset = buffer.getInt();
+
+        return new Entry(new String(key, StandardCharsets.UTF_8), date, offset);
+    }
+
+    private static void writeEntry(DataOutputStream output, Entry entry) throws IOException {
+        byte[] key = entry.key().getBytes(StandardCharsets.UTF_8);
+
+        output.writeShort(key.length);
+        output.write(key);
+        output.writeInt((int) entry.date().toEpochDay());
+        output.writeInt(entry.offset());
+    }
+}
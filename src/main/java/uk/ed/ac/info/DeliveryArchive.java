@@ -0,0 +1,661 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.OrderStatus;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * An append-only archive of every order processed, kept as one segment file per day with an index file beside it
+ *
+ * Each record in a segment is a small binary header (order number, status, validation code and restaurant)
+ * followed by the order as JSON. The index file holds a copy of every header in the segment, so a day's
+ * records can be indexed without reading the segment at all; the JSON is only parsed for the records a query
+ * actually returns. Each day's index is read the first time the day is needed, so appending to one day costs
+ * the same however many other days are archived.
+ *
+ * Looking orders up by number, status, validation code or restaurant goes through an ArchiveIndex across every
+ * day, kept on disk beside the segments and added to with each append, so these queries only read the days
+ * holding the orders they return. Opening the archive checks that the ArchiveIndex covers every segment to
+ * the end, and indexes any day again where it doesn't, e.g. after a crash part way through an append.
+ *
+ * If an order is archived again, e.g. because a day was re-run, the newer record replaces the older one in
+ * every query, and a record exactly the same as the one it would replace isn't written at all. Once a segment
+ * holds more superseded records than live ones it is compacted, rewriting it with only the latest record of
+ * each order. Not safe for use by several threads at once
+ */
+public class DeliveryArchive {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final String INDEX_SUFFIX = ".idx";
+    // Written at the start of every index file, so one from another layout is rebuilt rather than misread
+    private static final int INDEX_MAGIC = 0x44415849;
+    private static final int INDEX_VERSION = 1;
+    // Stored in place of an enum ordinal or string length when the field is null
+    private static final int NONE = -1;
+
+    private final Path directory;
+
+    // Every day with a segment, so date ranges can be walked in order
+    private final TreeSet<LocalDate> days = new TreeSet<>();
+    // The index of each day's segment, once the day has been needed
+    private final HashMap<LocalDate, SegmentIndex> segments = new HashMap<>();
+    // The record offsets for every order number, status, validation code and restaurant, across every day
+    private final ArchiveIndex archiveIndex;
+    // Segments already mapped into memory, dropped whenever more is appended to them
+    private final HashMap<LocalDate, MappedByteBuffer> mappedSegments = new HashMap<>();
+
+    /**
+     * The fields of a record that can be read without parsing its JSON
+     *
+     * @param offset: The position of the record within its segment
+     * @param next: The position just after the record, where the next one starts
+     * @param jsonStart: The position of the order's JSON
+     */
+    private record RecordHeader(int offset, String orderNo, OrderStatus status, OrderValidationCode validationCode,
+                                String restaurant, int next, int jsonStart) {
+        /**
+         * @param distance: How far the record has moved
+         * @return: The same header, for the record at its new position
+         */
+        RecordHeader moved(int distance) {
+            return new RecordHeader(offset + distance, orderNo, status, validationCode, restaurant,
+                    next + distance, jsonStart + distance);
+        }
+    }
+
+    /**
+     * The header of every record in one segment, in the order they were appended
+     */
+    private static class SegmentIndex {
+        // The length of segment the headers cover, which is where the next record will go
+        int length = 0;
+        final ArrayList<RecordHeader> records = new ArrayList<>();
+        // The latest record of each order within the segment
+        final HashMap<String, RecordHeader> latest = new HashMap<>();
+
+        void add(RecordHeader header) {
+            records.add(header);
+            latest.put(header.orderNo(), header);
+            length = header.next();
+        }
+
+        int superseded() {
+            return records.size() - latest.size();
+        }
+    }
+
+    /**
+     * Opens the archive in the given directory, creating the directory if needed. Only the names and sizes of
+     * the segments are read here, along with the ArchiveIndex. A day's own index is only read if the ArchiveIndex
+     * doesn't cover the whole segment, otherwise the first time the day is needed
+     *
+     * @param directory: The directory holding the segment files
+     */
+    public DeliveryArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        HashMap<LocalDate, Long> sizes = new HashMap<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    LocalDate date = LocalDate.parse(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length()));
+                    days.add(date);
+                    sizes.put(date, Files.size(file));
+                }
+            }
+        }
+
+        this.archiveIndex = new ArchiveIndex(directory);
+
+        // Every day where the segment and the ArchiveIndex disagree on the length, including segments that have
+        // gone or never made it into the index, is indexed again from the day's own index
+        Map<LocalDate, Integer> indexedLengths = archiveIndex.lengths();
+        HashMap<LocalDate, List<ArchiveIndex.Entry>> stale = new HashMap<>();
+
+        for (LocalDate date : days) {
+            Integer indexedLength = indexedLengths.get(date);
+
+            if (indexedLength == null || indexedLength != (long) sizes.get(date)) {
+                stale.put(date, indexEntries(date, segment(date), 0));
+            }
+        }
+        for (LocalDate date : indexedLengths.keySet()) {
+            if (!days.contains(date)) {
+                stale.put(date, List.of());
+            }
+        }
+
+        if (!stale.isEmpty()) {
+            archiveIndex.replaceDays(stale);
+        }
+    }
+
+    /**
+     * Adds the orders to the end of the day's segment and indexes them, leaving out any order whose latest
+     * record in the segment is already exactly the same. Only the day's own segment is read
+     *
+     * @param date: The day the orders were processed for
+     * @param orders: The orders to archive, after validation and delivery
+     * @param restaurantNames: The restaurant of each order that has one, keyed by order number
+     * @return: The number of orders written, which leaves out those already archived unchanged
+     */
+    public int append(LocalDate date, Order[] orders, Map<String, String> restaurantNames) throws IOException {
+        SegmentIndex index = days.contains(date) ? segment(date) : new SegmentIndex();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // The record written for each order in this batch, in case an order comes up twice
+        HashMap<String, byte[]> batch = new HashMap<>();
+        int written = 0;
+
+        for (Order order : orders) {
+            byte[] record = encodeRecord(order, restaurantNames.get(order.getOrderNo()));
+            byte[] previous = batch.get(order.getOrderNo());
+            boolean unchanged = previous != null
+                    ? Arrays.equals(previous, record)
+                    : isUnchanged(date, index, order.getOrderNo(), record);
+
+            if (unchanged) {continue;}
+
+            batch.put(order.getOrderNo(), record);
+            bytes.write(record);
+            written++;
+        }
+
+        if (written == 0) {
+            return 0;
+        }
+
+        Path segment = segmentPath(date);
+
+        // The whole batch goes down in one write, so a crash can only ever leave a partial record at the end
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        int start = index.length;
+        int added = index.records.size();
+        indexRecords(index, ByteBuffer.wrap(bytes.toByteArray()), start, 0);
+
+        days.add(date);
+        segments.put(date, index);
+        mappedSegments.remove(date);
+
+        // Compacting rewrites both indexes for the day, so there's no need to write either first
+        if (index.superseded() > index.latest.size()) {
+            compact(date);
+        } else {
+            writeIndexFile(date, index);
+            archiveIndex.add(indexEntries(date, index, added));
+        }
+
+        return written;
+    }
+
+    /**
+     * Rewrites the day's segment with only the latest record of each order, in the order they were archived.
+     * The new segment is written beside the old one and moved over it, so a crash part way through leaves
+     * one or the other
+     *
+     * @param date: The day of the segment to compact
+     */
+    public void compact(LocalDate date) throws IOException {
+        if (!days.contains(date)) {return;}
+
+        SegmentIndex index = segment(date);
+        if (index.superseded() == 0) {return;}
+
+        ByteBuffer segment = mapSegment(date);
+        SegmentIndex compacted = new SegmentIndex();
+        Path temporary = directory.resolve(SEGMENT_PREFIX + date + SEGMENT_SUFFIX + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (RecordHeader header : index.records) {
+                if (!header.equals(index.latest.get(header.orderNo()))) {continue;}
+
+                ByteBuffer record = segment.slice(header.offset(), header.next() - header.offset());
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                compacted.add(header.moved(compacted.length - header.offset()));
+            }
+            channel.force(true);
+        }
+
+        // The old index file goes first, so there's never an index file describing the wrong segment. Without
+        // one, the segment is just scanned the next time it's opened
+        Files.deleteIfExists(indexPath(date));
+        mappedSegments.remove(date);
+        Files.move(temporary, segmentPath(date), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        segments.put(date, compacted);
+        writeIndexFile(date, compacted);
+
+        // Every record in the day has moved, so all of the day's entries in the ArchiveIndex are replaced
+        archiveIndex.replaceDays(Map.of(date, indexEntries(date, compacted, 0)));
+    }
+
+    /**
+     * @param orderNo: The order number to look up
+     * @return: The latest archived record of the order, or null if it has never been archived
+     */
+    public Order findOrder(String orderNo) throws IOException {
+        ArchiveIndex.Entry latest = archiveIndex.last(ArchiveIndex.ORDER + orderNo);
+
+        if (latest == null) {
+            return null;
+        }
+
+        ByteBuffer segment = mapSegment(latest.date());
+        return readOrder(segment, readHeader(segment, latest.offset()));
+    }
+
+    /**
+     * @param from: The first day to include
+     * @param to: The last day to include
+     * @return: Every order archived for the days from and to, inclusive, in the order they were archived
+     */
+    public List<Order> findByDate(LocalDate from, LocalDate to) throws IOException {
+        ArrayList<Order> found = new ArrayList<>();
+
+        for (LocalDate date : days.subSet(from, true, to, true)) {
+            ByteBuffer segment = mapSegment(date);
+
+            for (RecordHeader header : segment(date).records) {
+                if (isLatest(header.orderNo(), date, header.offset())) {
+                    found.add(readOrder(segment, header));
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @param status: The status to look for
+     * @param from: The first day to include
+     * @param to: The last day to include
+     * @return: Every order with the status, archived for the days from and to, inclusive
+     */
+    public List<Order> findByStatus(OrderStatus status, LocalDate from, LocalDate to) throws IOException {
+        return findIndexed(ArchiveIndex.STATUS + status.name(), from, to);
+    }
+
+    /**
+     * @param validationCode: The validation code to look for
+     * @param from: The first day to include
+     * @param to: The last day to include
+     * @return: Every order with the validation code, archived for the days from and to, inclusive
+     */
+    public List<Order> findByValidationCode(OrderValidationCode validationCode, LocalDate from, LocalDate to)
+            throws IOException {
+        return findIndexed(ArchiveIndex.VALIDATION_CODE + validationCode.name(), from, to);
+    }
+
+    /**
+     * @param restaurant: The name of the restaurant to look for
+     * @param from: The first day to include
+     * @param to: The last day to include
+     * @return: Every order delivered from the restaurant, archived for the days from and to, inclusive
+     */
+    public List<Order> findByRestaurant(String restaurant, LocalDate from, LocalDate to) throws IOException {
+        return findIndexed(ArchiveIndex.RESTAURANT + restaurant, from, to);
+    }
+
+    /**
+     * Reads the orders at the offsets the ArchiveIndex lists for a key
+     *
+     * @param key: The key, behind its prefix
+     * @param from: The first day to include
+     * @param to: The last day to include
+     * @return: The latest version of each order listed between from and to
+     */
+    private List<Order> findIndexed(String key, LocalDate from, LocalDate to) throws IOException {
+        ArrayList<Order> found = new ArrayList<>();
+
+        for (ArchiveIndex.Entry entry : archiveIndex.find(key, from, to)) {
+            ByteBuffer segment = mapSegment(entry.date());
+            RecordHeader header = readHeader(segment, entry.offset());
+
+            // Superseded records are left in the index, so they're skipped here instead
+            if (isLatest(header.orderNo(), entry.date(), entry.offset())) {
+                found.add(readOrder(segment, header));
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @param date: The day of the segment
+     * @param index: The segment's index
+     * @param from: The position in the index of the first record to make entries for
+     * @return: The ArchiveIndex entries for the records from that position on, then the length of segment
+     *          they cover. Days are sorted in date order, so an order archived on more than one day is found
+     *          on the latest of them
+     */
+    private static List<ArchiveIndex.Entry> indexEntries(LocalDate date, SegmentIndex index, int from) {
+        ArrayList<ArchiveIndex.Entry> entries = new ArrayList<>();
+
+        for (RecordHeader header : index.records.subList(from, index.records.size())) {
+            entries.add(new ArchiveIndex.Entry(ArchiveIndex.ORDER + header.orderNo(), date, header.offset()));
+            if (header.status() != null) {
+                entries.add(new ArchiveIndex.Entry(ArchiveIndex.STATUS + header.status().name(), date, header.offset()));
+            }
+            if (header.validationCode() != null) {
+                entries.add(new ArchiveIndex.Entry(ArchiveIndex.VALIDATION_CODE + header.validationCode().name(),
+                        date, header.offset()));
+            }
+            if (header.restaurant() != null) {
+                entries.add(new ArchiveIndex.Entry(ArchiveIndex.RESTAURANT + header.restaurant(), date, header.offset()));
+            }
+        }
+
+        // Last, so an append cut short while adding these can't claim to cover records it has no entries for
+        entries.add(new ArchiveIndex.Entry(ArchiveIndex.LENGTH, date, index.length));
+        return entries;
+    }
+
+    /**
+     * @param date: The day of the segment
+     * @return: The segment's index, opening it if this is the first time the day has been needed
+     */
+    private SegmentIndex segment(LocalDate date) throws IOException {
+        SegmentIndex index = segments.get(date);
+
+        if (index == null) {
+            index = openSegment(date);
+            segments.put(date, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads a segment's index file, then indexes any records appended since it was written from their headers,
+     * cutting off any partial record left at the end by an interrupted append
+     *
+     * @param date: The day of the segment
+     * @return: The segment's index
+     */
+    private SegmentIndex openSegment(LocalDate date) throws IOException {
+        long size = Files.size(segmentPath(date));
+        SegmentIndex index = readIndexFile(date);
+
+        // An index covering more than the segment holds doesn't describe it, so the segment is scanned instead
+        if (index == null || index.length > size) {
+            index = new SegmentIndex();
+        }
+
+        if (index.length < size) {
+            int complete = indexRecords(index, mapSegment(date), 0, index.length);
+
+            if (complete < size) {
+                mappedSegments.remove(date);
+
+                try (FileChannel channel = FileChannel.open(segmentPath(date), StandardOpenOption.WRITE)) {
+                    channel.truncate(complete);
+                }
+            }
+
+            writeIndexFile(date, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds every complete record in the buffer, from the given position on, to the segment's index
+     *
+     * @param index: The index of the segment the records belong to
+     * @param records: The records
+     * @param base: The position within the segment of the start of the buffer
+     * @param from: The position within the buffer of the first record to index
+     * @return: The position within the segment just after the last complete record
+     */
+    private static int indexRecords(SegmentIndex index, ByteBuffer records, int base, int from) {
+        int offset = from;
+
+        while (offset + Integer.BYTES <= records.limit()) {
+            int length = records.getInt(offset);
+
+            if (length < 0 || offset + Integer.BYTES + length > records.limit()) {
+                break;
+            }
+
+            RecordHeader header = readHeader(records, offset);
+            index.add(header.moved(base));
+
+            offset = header.next();
+        }
+
+        return base + offset;
+    }
+
+    /**
+     * @param order: The order to archive
+     * @param restaurantName: The restaurant the order came from, or null if it has none
+     * @return: The order's record, header and JSON, as it's stored in a segment
+     */
+    private static byte[] encodeRecord(Order order, String restaurantName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        byte[] orderNo = order.getOrderNo().getBytes(StandardCharsets.UTF_8);
+        byte[] restaurant = restaurantName == null ? null : restaurantName.getBytes(StandardCharsets.UTF_8);
+        byte[] json = IlpJson.GSON.toJson(order, Order.class).getBytes(StandardCharsets.UTF_8);
+
+        // The length up front lets a scan hop from header to header without touching the JSON
+        output.writeInt(2 + Short.BYTES + orderNo.length + Short.BYTES
+                + (restaurant == null ? 0 : restaurant.length) + json.length);
+        output.writeByte(order.getOrderStatus() == null ? NONE : order.getOrderStatus().ordinal());
+        output.writeByte(order.getOrderValidationCode() == null ? NONE : order.getOrderValidationCode().ordinal());
+        output.writeShort(orderNo.length);
+        output.write(orderNo);
+        output.writeShort(restaurant == null ? NONE : restaurant.length);
+        if (restaurant != null) {
+            output.write(restaurant);
+        }
+        output.write(json);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param date: The day of the segment
+     * @param index: The segment's index
+     * @param orderNo: The order number of the record
+     * @param record: The record about to be appended
+     * @return: Whether the latest record of the order in the segment is exactly the same as the new one
+     */
+    private boolean isUnchanged(LocalDate date, SegmentIndex index, String orderNo, byte[] record)
+            throws IOException {
+        RecordHeader latest = index.latest.get(orderNo);
+
+        if (latest == null || latest.next() - latest.offset() != record.length) {
+            return false;
+        }
+
+        return mapSegment(date).slice(latest.offset(), record.length).equals(ByteBuffer.wrap(record));
+    }
+
+    /**
+     * @param segment: The segment holding the record
+     * @param offset: The position of the record within the segment
+     * @return: The record's header, read without touching its JSON
+     */
+    private static RecordHeader readHeader(ByteBuffer segment, int offset) {
+        int length = segment.getInt(offset);
+        int position = offset + Integer.BYTES;
+
+        byte status = segment.get(position++);
+        byte validationCode = segment.get(position++);
+
+        int orderNoLength = segment.getShort(position);
+        position += Short.BYTES;
+        String orderNo = readString(segment, position, orderNoLength);
+        position += orderNoLength;
+
+        int restaurantLength = segment.getShort(position);
+        position += Short.BYTES;
+        String restaurant = null;
+        if (restaurantLength != NONE) {
+            restaurant = readString(segment, position, restaurantLength);
+            position += restaurantLength;
+        }
+
+        return new RecordHeader(offset, orderNo,
+                status == NONE ? null : OrderStatus.values()[status],
+                validationCode == NONE ? null : OrderValidationCode.values()[validationCode],
+                restaurant, offset + Integer.BYTES + length, position);
+    }
+
+    private static String readString(ByteBuffer segment, int position, int length) {
+        return StandardCharsets.UTF_8.decode(segment.slice(position, length)).toString();
+    }
+
+    /**
+     * @param segment: The segment holding the record
+     * @param header: The record's header
+     * @return: The order parsed from the record's JSON
+     */
+    private static Order readOrder(ByteBuffer segment, RecordHeader header) {
+        String json = readString(segment, header.jsonStart(), header.next() - header.jsonStart());
+        return IlpJson.GSON.fromJson(json, Order.class);
+    }
+
+    private boolean isLatest(String orderNo, LocalDate date, int offset) {
+        ArchiveIndex.Entry latest = archiveIndex.last(ArchiveIndex.ORDER + orderNo);
+        return latest != null && latest.date().equals(date) && latest.offset() == offset;
+    }
+
+    /**
+     * Writes every header in the segment's index to its index file. The file is written beside the old one and
+     * moved over it, so it's never seen half written
+     *
+     * @param date: The day of the segment
+     * @param index: The segment's index
+     */
+    private void writeIndexFile(LocalDate date, SegmentIndex index) throws IOException {
+        Path temporary = directory.resolve(SEGMENT_PREFIX + date + INDEX_SUFFIX + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(INDEX_VERSION);
+            output.writeInt(index.length);
+            output.writeInt(index.records.size());
+
+            for (RecordHeader header : index.records) {
+                output.writeInt(header.offset());
+                output.writeInt(header.next());
+                output.writeInt(header.jsonStart());
+                output.writeByte(header.status() == null ? NONE : header.status().ordinal());
+                output.writeByte(header.validationCode() == null ? NONE : header.validationCode().ordinal());
+                output.writeUTF(header.orderNo());
+                output.writeBoolean(header.restaurant() != null);
+                if (header.restaurant() != null) {
+                    output.writeUTF(header.restaurant());
+                }
+            }
+        }
+
+        Files.move(temporary, indexPath(date), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param date: The day of the segment
+     * @return: The headers from the segment's index file, or null if there isn't a usable one
+     */
+    private SegmentIndex readIndexFile(LocalDate date) {
+        Path path = indexPath(date);
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                return null;
+            }
+
+            int length = input.readInt();
+            int count = input.readInt();
+            SegmentIndex index = new SegmentIndex();
+
+            for (int record = 0; record < count; record++) {
+                int offset = input.readInt();
+                int next = input.readInt();
+                int jsonStart = input.readInt();
+                byte status = input.readByte();
+                byte validationCode = input.readByte();
+                String orderNo = input.readUTF();
+                String restaurant = input.readBoolean() ? input.readUTF() : null;
+
+                index.add(new RecordHeader(offset, orderNo,
+                        status == NONE ? null : OrderStatus.values()[status],
+                        validationCode == NONE ? null : OrderValidationCode.values()[validationCode],
+                        restaurant, next, jsonStart));
+            }
+
+            // The records should run right up to the length the file says it covers
+            return index.length == length ? index : null;
+        }
+        // A damaged index file is no worse than a missing one, the segment is scanned instead
+        catch (IOException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param date: The day of the segment
+     * @return: The whole segment mapped read-only into memory, so reading a record only pages in that record
+     */
+    private ByteBuffer mapSegment(LocalDate date) throws IOException {
+        MappedByteBuffer mapped = mappedSegments.get(date);
+
+        if (mapped == null) {
+            try (FileChannel channel = FileChannel.open(segmentPath(date), StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mappedSegments.put(date, mapped);
+        }
+
+        return mapped;
+    }
+
+    private Path segmentPath(LocalDate date) {
+        return directory.resolve(SEGMENT_PREFIX + date + SEGMENT_SUFFIX);
+    }
+
+    private Path indexPath(LocalDate date) {
+        return directory.resolve(SEGMENT_PREFIX + date + INDEX_SUFFIX);
+    }
+}
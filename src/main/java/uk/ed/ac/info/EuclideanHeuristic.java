@@ -0,0 +1,16 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Estimates the remaining distance as the straight line to the destination
+ *
+ * Cheap, but it ignores both the fixed move directions and any no-fly zones in the way
+ */
+public class EuclideanHeuristic implements Heuristic {
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+
+    public double estimate(LngLat position, LngLat dest) {
+        return lngLatHandler.distanceTo(position, dest);
+    }
+}
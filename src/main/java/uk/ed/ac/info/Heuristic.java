@@ -0,0 +1,17 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * An estimate of the remaining distance to the destination, used by the PathRouter to decide which
+ * position to expand next. The closer this is to the true remaining distance, without going over it,
+ * the fewer positions the router has to look at
+ */
+public interface Heuristic {
+    /**
+     * @param position: The position the drone would be at
+     * @param dest: The end point for pathing
+     * @return: The estimated distance still to fly, in degrees
+     */
+    double estimate(LngLat position, LngLat dest);
+}
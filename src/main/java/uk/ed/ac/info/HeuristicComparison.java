@@ -0,0 +1,67 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static uk.ed.ac.info.PizzaDronzConstants.APPLETON_TOWER;
+
+/**
+ * Routes from Appleton Tower out to every restaurant once with each Heuristic, over both the floating-point
+ * and the lattice search space, and reports how many positions the router had to expand each time, so the
+ * heuristics can be compared on real routes
+ */
+public class HeuristicComparison {
+    public static void main(String[] args) {
+        String url = args.length > 0 ? args[0] : PizzaDronzConstants.DEFAULT_REST_URL;
+
+        RestAccess restAccess = new RestAccess(url);
+        NamedRegion centralArea = restAccess.getCentralArea();
+        NamedRegion[] noFlyZones = restAccess.getNoFlyZones();
+        Restaurant[] restaurants = restAccess.getRestaurants();
+
+        // Precomputing the landmarks is part of the cost of that heuristic, so it is timed too
+        long landmarkStart = System.nanoTime();
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(centralArea, noFlyZones);
+        System.out.printf("Landmarks precomputed in %.1fms%n", (System.nanoTime() - landmarkStart) / 1e6);
+
+        Map<String, Heuristic> heuristics = new LinkedHashMap<>();
+        heuristics.put("Euclidean", new EuclideanHeuristic());
+        heuristics.put("Lattice", new LatticeHeuristic());
+        heuristics.put("Landmark", landmarks);
+
+        System.out.printf("%-40s %-10s %-12s %8s %10s %10s%n",
+                "Restaurant", "Heuristic", "Space", "Moves", "Expanded", "Time (ms)");
+
+        // The positions expanded over every restaurant, for each heuristic and search space
+        Map<String, Integer> totals = new LinkedHashMap<>();
+
+        for (Restaurant restaurant : restaurants) {
+            for (Map.Entry<String, Heuristic> heuristic : heuristics.entrySet()) {
+                for (PathRouter.SearchSpace space : PathRouter.SearchSpace.values()) {
+                    // Every router shares the landmarks' grid, as it covers the same airspace
+                    PathRouter router = new PathRouter(centralArea, noFlyZones, landmarks.getGrid(),
+                            heuristic.getValue(), space);
+
+                    try {
+                        long routeStart = System.nanoTime();
+                        int moves = router.getOutboundRoute(APPLETON_TOWER, restaurant.location()).size();
+                        double millis = (System.nanoTime() - routeStart) / 1e6;
+
+                        System.out.printf("%-40s %-10s %-12s %8d %10d %10.1f%n", restaurant.name(),
+                                heuristic.getKey(), space, moves, router.getExpandedNodes(), millis);
+                        totals.merge(String.format("%-10s %-12s", heuristic.getKey(), space), router.getExpandedNodes(), Integer::sum);
+                    } catch (UnreachableDestinationException e) {
+                        System.out.printf("%-40s %-10s %-12s unreachable%n", restaurant.name(), heuristic.getKey(), space);
+                    }
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-23s %10s%n", "Total", "Expanded");
+        totals.forEach((combination, expanded) -> System.out.printf("%-23s %10d%n", combination, expanded));
+    }
+}
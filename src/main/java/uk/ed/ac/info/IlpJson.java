@@ -0,0 +1,327 @@
+package uk.ed.ac.info;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ReflectionAccessFilter;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import uk.ac.ed.inf.ilp.constant.OrderStatus;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.*;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+/**
+ * Shared Gson instances which read and write the ILP data types with hand-written streaming adapters
+ *
+ * By default Gson works out how to bind each class through reflection the first time it sees it, which is
+ * paid again by every new Gson instance and is a large part of the start-up cost. These adapters read and
+ * write the fields directly, and reflection is blocked outright so a type without an adapter fails loudly
+ * rather than quietly falling back to it
+ */
+public class IlpJson {
+    public static final Gson GSON = builder().create();
+    public static final Gson PRETTY_GSON = builder().setPrettyPrinting().create();
+
+    private static GsonBuilder builder() {
+        return new GsonBuilder()
+                .addReflectionAccessFilter(rawClass -> ReflectionAccessFilter.FilterResult.BLOCK_ALL)
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter().nullSafe())
+                .registerTypeAdapter(DayOfWeek.class, new EnumAdapter<>(DayOfWeek.class).nullSafe())
+                .registerTypeAdapter(OrderStatus.class, new EnumAdapter<>(OrderStatus.class).nullSafe())
+                .registerTypeAdapter(OrderValidationCode.class, new EnumAdapter<>(OrderValidationCode.class).nullSafe())
+                .registerTypeAdapter(LngLat.class, new LngLatAdapter().nullSafe())
+                .registerTypeAdapter(NamedRegion.class, new NamedRegionAdapter().nullSafe())
+                .registerTypeAdapter(Pizza.class, new PizzaAdapter().nullSafe())
+                .registerTypeAdapter(Restaurant.class, new RestaurantAdapter().nullSafe())
+                .registerTypeAdapter(CreditCardInformation.class, new CreditCardInformationAdapter().nullSafe())
+                .registerTypeAdapter(Order.class, new OrderAdapter().nullSafe());
+    }
+
+    /**
+     * Reads an array of values with the given adapter
+     *
+     * @param in: The reader, positioned at the start of the array
+     * @param adapter: The adapter for each element
+     * @param empty: An empty array of the element type, used to create the result
+     * @return: The elements read
+     */
+    private static <T> T[] readArray(JsonReader in, TypeAdapter<T> adapter, T[] empty) throws IOException {
+        ArrayList<T> elements = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            elements.add(adapter.read(in));
+        }
+        in.endArray();
+
+        return elements.toArray(empty);
+    }
+
+    /**
+     * Writes an array of values with the given adapter
+     *
+     * @param out: The writer
+     * @param adapter: The adapter for each element
+     * @param elements: The elements to write
+     */
+    private static <T> void writeArray(JsonWriter out, TypeAdapter<T> adapter, T[] elements) throws IOException {
+        if (elements == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginArray();
+        for (T element : elements) {
+            adapter.write(out, element);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Dates are written as ISO-8601 strings, e.g. "2023-11-04", as the REST service gives them
+     */
+    private static class LocalDateAdapter extends TypeAdapter<LocalDate> {
+        public void write(JsonWriter out, LocalDate value) throws IOException {
+            out.value(value.toString());
+        }
+
+        public LocalDate read(JsonReader in) throws IOException {
+            return LocalDate.parse(in.nextString());
+        }
+    }
+
+    /**
+     * Enums are written by name
+     */
+    private static class EnumAdapter<E extends Enum<E>> extends TypeAdapter<E> {
+        private final Class<E> type;
+
+        EnumAdapter(Class<E> type) {
+            this.type = type;
+        }
+
+        public void write(JsonWriter out, E value) throws IOException {
+            out.value(value.name());
+        }
+
+        public E read(JsonReader in) throws IOException {
+            return Enum.valueOf(type, in.nextString());
+        }
+    }
+
+    private static class LngLatAdapter extends TypeAdapter<LngLat> {
+        public void write(JsonWriter out, LngLat value) throws IOException {
+            out.beginObject();
+            out.name("lng").value(value.lng());
+            out.name("lat").value(value.lat());
+            out.endObject();
+        }
+
+        public LngLat read(JsonReader in) throws IOException {
+            double lng = 0;
+            double lat = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "lng" -> lng = in.nextDouble();
+                    case "lat" -> lat = in.nextDouble();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new LngLat(lng, lat);
+        }
+    }
+
+    private static class NamedRegionAdapter extends TypeAdapter<NamedRegion> {
+        private final LngLatAdapter lngLatAdapter = new LngLatAdapter();
+
+        public void write(JsonWriter out, NamedRegion value) throws IOException {
+            out.beginObject();
+            out.name("name").value(value.name());
+            out.name("vertices");
+            writeArray(out, lngLatAdapter, value.vertices());
+            out.endObject();
+        }
+
+        public NamedRegion read(JsonReader in) throws IOException {
+            String name = null;
+            LngLat[] vertices = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> name = in.nextString();
+                    case "vertices" -> vertices = readArray(in, lngLatAdapter, new LngLat[0]);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new NamedRegion(name, vertices);
+        }
+    }
+
+    private static class PizzaAdapter extends TypeAdapter<Pizza> {
+        public void write(JsonWriter out, Pizza value) throws IOException {
+            out.beginObject();
+            out.name("name").value(value.name());
+            out.name("priceInPence").value(value.priceInPence());
+            out.endObject();
+        }
+
+        public Pizza read(JsonReader in) throws IOException {
+            String name = null;
+            int priceInPence = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> name = in.nextString();
+                    case "priceInPence" -> priceInPence = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new Pizza(name, priceInPence);
+        }
+    }
+
+    private static class RestaurantAdapter extends TypeAdapter<Restaurant> {
+        private final LngLatAdapter lngLatAdapter = new LngLatAdapter();
+        private final EnumAdapter<DayOfWeek> dayAdapter = new EnumAdapter<>(DayOfWeek.class);
+        private final PizzaAdapter pizzaAdapter = new PizzaAdapter();
+
+        public void write(JsonWriter out, Restaurant value) throws IOException {
+            out.beginObject();
+            out.name("name").value(value.name());
+            out.name("location");
+            lngLatAdapter.write(out, value.location());
+            out.name("openingDays");
+            writeArray(out, dayAdapter, value.openingDays());
+            out.name("menu");
+            writeArray(out, pizzaAdapter, value.menu());
+            out.endObject();
+        }
+
+        public Restaurant read(JsonReader in) throws IOException {
+            String name = null;
+            LngLat location = null;
+            DayOfWeek[] openingDays = null;
+            Pizza[] menu = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> name = in.nextString();
+                    case "location" -> location = lngLatAdapter.read(in);
+                    case "openingDays" -> openingDays = readArray(in, dayAdapter, new DayOfWeek[0]);
+                    case "menu" -> menu = readArray(in, pizzaAdapter, new Pizza[0]);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new Restaurant(name, location, openingDays, menu);
+        }
+    }
+
+    private static class CreditCardInformationAdapter extends TypeAdapter<CreditCardInformation> {
+        public void write(JsonWriter out, CreditCardInformation value) throws IOException {
+            out.beginObject();
+            out.name("creditCardNumber").value(value.getCreditCardNumber());
+            out.name("creditCardExpiry").value(value.getCreditCardExpiry());
+            out.name("cvv").value(value.getCvv());
+            out.endObject();
+        }
+
+        public CreditCardInformation read(JsonReader in) throws IOException {
+            CreditCardInformation cardInformation = new CreditCardInformation();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "creditCardNumber" -> cardInformation.setCreditCardNumber(nextStringOrNull(in));
+                    case "creditCardExpiry" -> cardInformation.setCreditCardExpiry(nextStringOrNull(in));
+                    case "cvv" -> cardInformation.setCvv(nextStringOrNull(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return cardInformation;
+        }
+    }
+
+    /**
+     * Orders are written with their fields in the same order Gson's reflection gave, so the deliveries
+     * files are unchanged
+     */
+    private static class OrderAdapter extends TypeAdapter<Order> {
+        private final TypeAdapter<LocalDate> dateAdapter = new LocalDateAdapter().nullSafe();
+        private final TypeAdapter<OrderStatus> statusAdapter = new EnumAdapter<>(OrderStatus.class).nullSafe();
+        private final TypeAdapter<OrderValidationCode> codeAdapter =
+                new EnumAdapter<>(OrderValidationCode.class).nullSafe();
+        private final PizzaAdapter pizzaAdapter = new PizzaAdapter();
+        private final TypeAdapter<CreditCardInformation> cardAdapter = new CreditCardInformationAdapter().nullSafe();
+
+        public void write(JsonWriter out, Order value) throws IOException {
+            out.beginObject();
+            out.name("orderNo").value(value.getOrderNo());
+            out.name("orderDate");
+            dateAdapter.write(out, value.getOrderDate());
+            out.name("orderStatus");
+            statusAdapter.write(out, value.getOrderStatus());
+            out.name("orderValidationCode");
+            codeAdapter.write(out, value.getOrderValidationCode());
+            out.name("priceTotalInPence").value(value.getPriceTotalInPence());
+            out.name("pizzasInOrder");
+            writeArray(out, pizzaAdapter, value.getPizzasInOrder());
+            out.name("creditCardInformation");
+            cardAdapter.write(out, value.getCreditCardInformation());
+            out.endObject();
+        }
+
+        public Order read(JsonReader in) throws IOException {
+            Order order = new Order();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "orderNo" -> order.setOrderNo(nextStringOrNull(in));
+                    case "orderDate" -> order.setOrderDate(dateAdapter.read(in));
+                    case "orderStatus" -> order.setOrderStatus(statusAdapter.read(in));
+                    case "orderValidationCode" -> order.setOrderValidationCode(codeAdapter.read(in));
+                    case "priceTotalInPence" -> order.setPriceTotalInPence(in.nextInt());
+                    case "pizzasInOrder" -> order.setPizzasInOrder(readArray(in, pizzaAdapter, new Pizza[0]));
+                    case "creditCardInformation" -> order.setCreditCardInformation(cardAdapter.read(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return order;
+        }
+    }
+
+    /**
+     * @param in: The reader, positioned at a string or null
+     * @return: The string read, or null
+     */
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
@@ -0,0 +1,146 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Estimates the remaining distance using landmarks (the ALT technique: A*, Landmarks, Triangle inequality)
+ *
+ * The distance from a handful of landmarks around the edge of the AirspaceGrid to every cell is precomputed
+ * once per airspace, flying around the no-fly zones. For any landmark L the triangle inequality gives
+ * |d(L, dest) - d(L, pos)| <= d(pos, dest), so unlike a straight line this estimate grows when a no-fly zone
+ * sits between pos and dest.
+ *
+ * The landmark distances are measured between cells rather than exact positions, so the estimate is reduced
+ * by the most that rounding to a cell can account for. They are also measured along the cell steps rather
+ * than the drone's moves, which can come out longer, so the difference is scaled back down first.
+ * Outside the grid there is nothing in the way, and the LatticeHeuristic is used alone
+ */
+public class LandmarkHeuristic implements Heuristic {
+    private final double SLACK = AirspaceGrid.CELL_SIZE * Math.sqrt(2) + SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+    // The most a distance along the cell STEPS can exceed the same distance flown with the drone's 16 moves,
+    // about 8.24%. This is worst at 22.5 degrees, which the drone flies directly. In open airspace the cells make
+    // that up from a straight step and a {1, 2} step, only 1.42% longer, but the {1, 2} steps can't be taken
+    // past a blocked cell, so along the edge of a no-fly zone only a straight and a diagonal step are left
+    private final double STEPS_STRETCH = Math.cos(Math.toRadians(22.5)) + (Math.sqrt(2) - 1) * Math.sin(Math.toRadians(22.5));
+
+    // Cell offsets searched from each cell: the eight neighbours, plus the eight in-between directions
+    // so that distances follow the drone's 16 move directions more closely
+    private final int[][] STEPS = {
+            {0, 1}, {1, 2}, {1, 1}, {2, 1}, {1, 0}, {2, -1}, {1, -1}, {1, -2},
+            {0, -1}, {-1, -2}, {-1, -1}, {-2, -1}, {-1, 0}, {-2, 1}, {-1, 1}, {-1, 2}};
+
+    private final AirspaceGrid grid;
+    private final LatticeHeuristic lattice = new LatticeHeuristic();
+    private final double[][] landmarkDistances;
+
+    public LandmarkHeuristic(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        this(new AirspaceGrid(centralArea, noFlyZones));
+    }
+
+    LandmarkHeuristic(AirspaceGrid grid) {
+        this.grid = grid;
+
+        // The corners and edge midpoints of the grid surround every no-fly zone, and are always free
+        int[] rows = {0, grid.rows / 2, grid.rows - 1};
+        int[] cols = {0, grid.cols / 2, grid.cols - 1};
+
+        this.landmarkDistances = Arrays.stream(rows)
+                .boxed()
+                .flatMap(row -> Arrays.stream(cols).mapToObj(col -> row * grid.cols + col))
+                .filter(cell -> cell != (grid.rows / 2) * grid.cols + grid.cols / 2)
+                .map(this::distancesFrom)
+                .toArray(double[][]::new);
+    }
+
+    /**
+     * @return: The grid the landmark distances were measured over, which other users of the same airspace can share
+     */
+    AirspaceGrid getGrid() {
+        return grid;
+    }
+
+    public double estimate(LngLat position, LngLat dest) {
+        double estimate = lattice.estimate(position, dest);
+
+        if (!grid.contains(position) || !grid.contains(dest)) {
+            return estimate;
+        }
+
+        int positionCell = grid.cellOf(position);
+        int destCell = grid.cellOf(dest);
+
+        for (double[] distances : landmarkDistances) {
+            // Cells cut off from a landmark tell us nothing about the distance between them
+            if (Double.isInfinite(distances[positionCell]) || Double.isInfinite(distances[destCell])) {continue;}
+
+            estimate = Math.max(estimate, Math.abs(distances[destCell] - distances[positionCell]) / STEPS_STRETCH - SLACK);
+        }
+
+        // As with the LatticeHeuristic, the drone can only ever fly a whole number of moves
+        return Math.max(0, Math.ceil(estimate / SystemConstants.DRONE_MOVE_DISTANCE - 1e-9)) * SystemConstants.DRONE_MOVE_DISTANCE;
+    }
+
+    /**
+     * Uses Dijkstra's algorithm to find the distance from the landmark to every cell, avoiding blocked cells
+     *
+     * @param landmark: The index of the landmark cell
+     * @return: The distance to each cell in degrees, or infinity if it can't be reached
+     */
+    private double[] distancesFrom(int landmark) {
+        double[] distances = new double[grid.size()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[landmark] = 0;
+
+        // Entries are {distance, cell}, stale entries are skipped rather than removed
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[] {0, landmark});
+
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int cell = (int) entry[1];
+
+            if (entry[0] > distances[cell]) {continue;}
+
+            int row = cell / grid.cols;
+            int col = cell % grid.cols;
+
+            for (int[] step : STEPS) {
+                int nextRow = row + step[0];
+                int nextCol = col + step[1];
+
+                if (!isFree(nextRow, nextCol)) {continue;}
+
+                // The longer steps pass between two cells on the way, and neither of those can be blocked
+                if (Math.abs(step[0]) + Math.abs(step[1]) == 3
+                        && !(isFree(row + step[0] / 2, col + step[1] / 2)
+                        && isFree(row + step[0] - step[0] / 2, col + step[1] - step[1] / 2))) {
+                    continue;
+                }
+
+                int next = nextRow * grid.cols + nextCol;
+                double distance = distances[cell] + Math.hypot(step[0], step[1]) * AirspaceGrid.CELL_SIZE;
+
+                if (distance < distances[next]) {
+                    distances[next] = distance;
+                    queue.add(new double[] {distance, next});
+                }
+            }
+        }
+
+        return distances;
+    }
+
+    /**
+     * @param row: The row of the cell
+     * @param col: The column of the cell
+     * @return: Whether the cell lies within the grid and is not blocked
+     */
+    private boolean isFree(int row, int col) {
+        return row >= 0 && row < grid.rows && col >= 0 && col < grid.cols && !grid.blocked[row * grid.cols + col];
+    }
+}
@@ -0,0 +1,35 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Estimates the remaining distance as the shortest distance possible using only the 16 move directions
+ *
+ * The cheapest way to cover a displacement with fixed directions is to use the two directions either side
+ * of it, which works out as the straight line distance stretched by up to 1/cos(11.25 degrees) (about 2%),
+ * depending on how far the displacement is from the nearest move direction
+ */
+public class LatticeHeuristic implements Heuristic {
+    private final double SECTOR = 360.0 / 16;
+    private final double STRETCH = 1 / Math.cos(Math.toRadians(SECTOR / 2));
+
+    public double estimate(LngLat position, LngLat dest) {
+        double dLng = dest.lng() - position.lng();
+        double dLat = dest.lat() - position.lat();
+
+        // How far the displacement sits from the move directions either side of it, in degrees
+        double alpha = ((Math.toDegrees(Math.atan2(dLat, dLng)) % SECTOR) + SECTOR) % SECTOR;
+        double beta = SECTOR - alpha;
+
+        double latticeDistance = Math.hypot(dLng, dLat) * Math.cos(Math.toRadians((alpha - beta) / 2)) * STRETCH;
+
+        // The drone only needs to get close to dest, and the furthest it can save by doing so
+        // is the close distance stretched in the worst direction
+        double moves = (latticeDistance - SystemConstants.DRONE_IS_CLOSE_DISTANCE * STRETCH) / SystemConstants.DRONE_MOVE_DISTANCE;
+
+        // The drone can't make part of a move, so this rounds up to whole moves. The tolerance keeps
+        // floating point error from pushing an exact number of moves up to the next one
+        return Math.max(0, Math.ceil(moves - 1e-9)) * SystemConstants.DRONE_MOVE_DISTANCE;
+    }
+}
@@ -0,0 +1,129 @@
+package uk.ed.ac.info;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the ILP REST service, so the whole pipeline can be run offline
+ *
+ * Serves the same endpoints RestAccess uses from fixture files: restaurants.json, centralArea.json,
+ * noFlyZones.json and orders-{date}.json. Alongside these, expected-moves-{date}.json holds the moves the
+ * pipeline should fly for each order, for PipelineBenchmark to check against. By default the fixtures are those
+ * bundled on the classpath,
+ * which were recorded from the 2023-11-04 run in resultfiles/, but any directory of fixtures can be used
+ */
+public class LocalRestServer {
+    private final HttpServer server;
+    private final Path fixtureDirectory;
+    // When the first request since the last call to takeFirstRequestNanos arrived, or 0 if none has yet
+    private final AtomicLong firstRequestNanos = new AtomicLong();
+
+    /**
+     * @param port: The port to listen on, or 0 to pick any free port
+     * @param fixtureDirectory: The directory to read fixtures from, or null to use the bundled fixtures
+     */
+    public LocalRestServer(int port, Path fixtureDirectory) throws IOException {
+        this.fixtureDirectory = fixtureDirectory;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    }
+
+    public LocalRestServer(int port) throws IOException {
+        this(port, null);
+    }
+
+    public void start() {
+        // Registered here rather than in the constructor, so the handler never sees a half-constructed server
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * @return: The base URL of the server, in the form RestAccess expects
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Lets a caller time how long a client took to make its first request, e.g. from launching it
+     *
+     * @return: The System.nanoTime() at which the first request since the last call arrived, or 0 if none has
+     */
+    public long takeFirstRequestNanos() {
+        return firstRequestNanos.getAndSet(0);
+    }
+
+    /**
+     * Answers a single request, mapping the endpoint onto the matching fixture
+     *
+     * @param exchange: The request and its response
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        firstRequestNanos.compareAndSet(0, System.nanoTime());
+
+        String endpoint = exchange.getRequestURI().getPath().substring(1);
+        String body;
+
+        if (endpoint.equals("isAlive")) {
+            body = "true";
+        } else if (endpoint.startsWith("orders/")) {
+            // A day with no recorded orders is still a valid day, it just has nothing to deliver
+            body = readFixture("orders-" + endpoint.substring("orders/".length()) + ".json");
+            if (body == null) {body = "[]";}
+        } else if (endpoint.equals("restaurants") || endpoint.equals("centralArea") || endpoint.equals("noFlyZones")) {
+            body = readFixture(endpoint + ".json");
+        } else {
+            body = null;
+        }
+
+        byte[] response = (body == null ? "Not found" : body).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", body == null ? "text/plain" : "application/json");
+        exchange.sendResponseHeaders(body == null ? 404 : 200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    /**
+     * @param name: The file name of the fixture
+     * @return: The contents of the fixture, or null if there is no such fixture
+     */
+    String readFixture(String name) throws IOException {
+        if (fixtureDirectory != null) {
+            Path file = fixtureDirectory.resolve(name);
+            return Files.exists(file) ? Files.readString(file) : null;
+        }
+
+        try (InputStream input = LocalRestServer.class.getResourceAsStream("/fixtures/" + name)) {
+            return input == null ? null : new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Runs the server on its own until stopped, so that Main can be pointed at it
+     *
+     * @param args: Optionally the port to listen on (8080 by default), then a fixture directory
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path fixtureDirectory = args.length > 1 ? Path.of(args[1]) : null;
+
+        LocalRestServer server = new LocalRestServer(port, fixtureDirectory);
+        server.start();
+        System.out.println("Serving fixtures at " + server.getUrl());
+    }
+}
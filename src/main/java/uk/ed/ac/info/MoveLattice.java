@@ -0,0 +1,95 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * The positions a drone can reach from a fixed origin, as whole numbers of each of the 16 moves
+ *
+ * Moves in opposite directions cancel out, so a position is just the net number of moves along each of
+ * the 8 axes, and the 8 axes are independent: two different sets of counts never land on the same point.
+ * The counts are packed into a long, one signed byte per axis, so two move sequences reach the same
+ * position exactly when they give the same key. Positions are only turned back into a LngLat where the
+ * airspace or the heuristic needs one
+ */
+class MoveLattice {
+    static final int DIRECTIONS = 16;
+    static final int AXES = DIRECTIONS / 2;
+    static final double ANGLE_STEP = 360.0 / DIRECTIONS;
+    // The key of the origin itself, where every count is zero
+    static final long ORIGIN = 0L;
+
+    private final LngLat origin;
+    // The change in longitude and latitude of one move along each axis
+    private final double[] axisLng = new double[AXES];
+    private final double[] axisLat = new double[AXES];
+
+    /**
+     * @param origin: The position every key is measured from
+     */
+    MoveLattice(LngLat origin) {
+        this.origin = origin;
+
+        // Worked out the same way as LngLatHandler.nextPosition, just once rather than for every move
+        for (int axis = 0; axis < AXES; axis++) {
+            axisLng[axis] = SystemConstants.DRONE_MOVE_DISTANCE * Math.cos(axis * ANGLE_STEP * Math.PI/180);
+            axisLat[axis] = SystemConstants.DRONE_MOVE_DISTANCE * Math.sin(axis * ANGLE_STEP * Math.PI/180);
+        }
+    }
+
+    /**
+     * @param direction: The index of the direction, from 0 up to DIRECTIONS - 1
+     * @return: The angle of the direction in degrees, as the flightpath records it
+     */
+    static double angleOf(int direction) {
+        return direction * ANGLE_STEP;
+    }
+
+    /**
+     * @param key: The position to move from
+     * @param direction: The index of the direction to move in
+     * @return: Whether the move can be packed, i.e. the count along its axis stays within a signed byte
+     */
+    static boolean canMove(long key, int direction) {
+        int count = countAlong(key, direction % AXES);
+        return direction < AXES ? count < Byte.MAX_VALUE : count > Byte.MIN_VALUE;
+    }
+
+    /**
+     * @param key: The position to move from
+     * @param direction: The index of the direction to move in, which canMove must allow
+     * @return: The key of the position one move away
+     */
+    static long move(long key, int direction) {
+        int axis = direction % AXES;
+        int count = countAlong(key, axis) + (direction < AXES ? 1 : -1);
+
+        return (key & ~(0xFFL << (axis * Byte.SIZE))) | ((count & 0xFFL) << (axis * Byte.SIZE));
+    }
+
+    /**
+     * @param key: The position
+     * @param axis: The index of the axis
+     * @return: The net number of moves made along the axis
+     */
+    static int countAlong(long key, int axis) {
+        return (byte) (key >>> (axis * Byte.SIZE));
+    }
+
+    /**
+     * @param key: The position
+     * @return: The position as a LngLat. The same key always gives exactly the same LngLat
+     */
+    LngLat toLngLat(long key) {
+        double lng = origin.lng();
+        double lat = origin.lat();
+
+        for (int axis = 0; axis < AXES; axis++) {
+            int count = countAlong(key, axis);
+            lng += count * axisLng[axis];
+            lat += count * axisLat[axis];
+        }
+
+        return new LngLat(lng, lat);
+    }
+}
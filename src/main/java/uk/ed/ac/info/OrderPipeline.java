@@ -0,0 +1,565 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.OrderStatus;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static uk.ac.ed.inf.ilp.constant.OrderStatus.VALID_BUT_NOT_DELIVERED;
+import static uk.ed.ac.info.PizzaDronzConstants.APPLETON_TOWER;
+
+/**
+ * Fetches, validates and routes every order for a date, then writes the result files, as four stages
+ * running side by side:
+ *  - Fetch: the REST calls, made in parallel, with orders passed on as soon as each is read
+ *  - Validate: checks each order, and finds the restaurant of those that are valid
+ *  - Route: looks up the route for each valid order's restaurant, planning it if this is the first order
+ *  - Write: adds each order to the result files
+ *
+ * The stages are joined by bounded queues, so a stage that falls behind blocks the one before it rather than
+ * letting orders pile up in memory. Orders can finish routing out of order, so the write stage holds any that
+ * arrive early until those before them are written, which keeps the files in the order the orders were fetched
+ */
+public class OrderPipeline {
+    /**
+     * An order on its way through the pipeline
+     *
+     * @param sequence: The order's position in the day's list, which the write stage puts the orders back into
+     * @param order: The order itself
+     * @param restaurant: The restaurant ordered from, once the order has been found valid
+     * @param route: The route for the order, planned from Appleton Tower out to the restaurant, once routed
+     */
+    private record OrderTask(int sequence, Order order, Restaurant restaurant, Route route) {}
+
+    /**
+     * How one stage of the pipeline got on over a run
+     *
+     * @param name: The stage's name
+     * @param threads: The number of threads the stage ran on
+     * @param items: The number of orders the stage handled
+     * @param busyNanos: Time spent working, summed over the stage's threads
+     * @param utilisation: The fraction of the run the stage's threads spent working, from 0 to 1
+     * @param maxQueueDepth: The most orders ever waiting in the stage's input queue
+     * @param meanQueueDepth: The average number of orders waiting in the stage's input queue, as each arrived
+     */
+    public record StageReport(String name, int threads, int items, long busyNanos, double utilisation,
+                              int maxQueueDepth, double meanQueueDepth) {}
+
+    /**
+     * The outcome of one run of the pipeline
+     *
+     * @param paths: The route for each delivered order, in the order the orders were fetched
+     * @param wallNanos: Time from the start of the run until the last file was written
+     * @param stages: How each stage got on, in pipeline order
+     * @param ordersComplete: Whether every order for the date was fetched. If not, the result files only hold
+     *                        the orders read before the fetch failed
+     */
+    public record PipelineResult(LinkedHashMap<String, Route> paths, long wallNanos, List<StageReport> stages,
+                                 boolean ordersComplete) {}
+
+    // Sent down a queue once per thread of the stage taking from it, to tell each thread no more orders are coming
+    private static final OrderTask END = new OrderTask(-1, null, null, null);
+
+    private final int fetchThreads;
+    private final int validateThreads;
+    private final int routeThreads;
+    private final int queueCapacity;
+    private final boolean simplifiedGeoJson;
+    private final double simplifyTolerance;
+    private final int searchThreads;
+
+    /**
+     * Uses the default settings, each of which can be overridden with a system property:
+     * pipeline.fetchThreads (4, one per REST call), pipeline.validateThreads (1),
+     * pipeline.routeThreads (one per processor), pipeline.queueCapacity (16), pipeline.simplifiedGeoJson (false)
+     * pipeline.simplifyTolerance (0.5) and pipeline.searchThreads (1). The tolerance is given in moves rather than
+     * degrees, and half a move is too small to see on a map of the city, but smooths out the zig-zags between
+     * directions
+     */
+    public OrderPipeline() {
+        this(Integer.getInteger("pipeline.fetchThreads", 4),
+                Integer.getInteger("pipeline.validateThreads", 1),
+                Integer.getInteger("pipeline.routeThreads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("pipeline.queueCapacity", 16),
+                Boolean.getBoolean("pipeline.simplifiedGeoJson"),
+                Double.parseDouble(System.getProperty("pipeline.simplifyTolerance", "0.5"))
+                        * SystemConstants.DRONE_MOVE_DISTANCE,
+                Integer.getInteger("pipeline.searchThreads", 1));
+    }
+
+    /**
+     * Only writes the result files that are always expected, without the simplified GeoJSON
+     *
+     * @param fetchThreads: The number of REST calls to make at once
+     * @param validateThreads: The number of threads validating orders
+     * @param routeThreads: The number of threads routing orders
+     * @param queueCapacity: The most orders each queue between stages can hold
+     */
+    public OrderPipeline(int fetchThreads, int validateThreads, int routeThreads, int queueCapacity) {
+        this(fetchThreads, validateThreads, routeThreads, queueCapacity, false, 0, 1);
+    }
+
+    /**
+     * The write stage always runs on a single thread, as the files can only be written in order
+     *
+     * @param fetchThreads: The number of REST calls to make at once
+     * @param validateThreads: The number of threads validating orders
+     * @param routeThreads: The number of threads routing orders
+     * @param queueCapacity: The most orders each queue between stages can hold
+     * @param simplifiedGeoJson: Whether to also write drone-{date}-simplified.geojson, a lighter copy of the
+     *                           routes for viewing on a map
+     * @param simplifyTolerance: How far the simplified GeoJSON may stray from the path flown, in degrees. At 0,
+     *                           runs of moves in the same direction are collapsed, but no other point is dropped
+     * @param searchThreads: The number of threads each restaurant's route is searched with, as
+     *                       PathRouter.getOutboundRoute describes. Each route thread starts its own, so this only
+     *                       helps when there are more processors than restaurants being routed at once
+     */
+    public OrderPipeline(int fetchThreads, int validateThreads, int routeThreads, int queueCapacity,
+                         boolean simplifiedGeoJson, double simplifyTolerance, int searchThreads) {
+        this.fetchThreads = fetchThreads;
+        this.validateThreads = validateThreads;
+        this.routeThreads = routeThreads;
+        this.queueCapacity = queueCapacity;
+        this.simplifiedGeoJson = simplifiedGeoJson;
+        this.simplifyTolerance = simplifyTolerance;
+        this.searchThreads = searchThreads;
+    }
+
+    /**
+     * One stage of the pipeline, with the queue it takes orders from and a tally of how it got on
+     */
+    private static class Stage {
+        final String name;
+        final int threads;
+        // Null for the fetch stage, which has nothing before it
+        final ArrayBlockingQueue<OrderTask> input;
+
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicInteger items = new AtomicInteger();
+        final AtomicInteger maxDepth = new AtomicInteger();
+        final AtomicLong totalDepth = new AtomicLong();
+        final AtomicInteger arrivals = new AtomicInteger();
+
+        Stage(String name, int threads, int queueCapacity) {
+            this.name = name;
+            this.threads = threads;
+            this.input = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : null;
+        }
+
+        /**
+         * Adds an order to the stage's queue, waiting for space if the stage has fallen behind
+         *
+         * @param task: The order to add
+         */
+        void put(OrderTask task) {
+            try {
+                input.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while passing on order", e);
+            }
+
+            if (task != END) {
+                int depth = input.size();
+                maxDepth.accumulateAndGet(depth, Math::max);
+                totalDepth.addAndGet(depth);
+                arrivals.incrementAndGet();
+            }
+        }
+
+        /**
+         * Tells every thread of the stage that no more orders are coming
+         */
+        void end() {
+            for (int thread = 0; thread < threads; thread++) {
+                put(END);
+            }
+        }
+
+        StageReport report(long wallNanos) {
+            return new StageReport(name, threads, items.get(), busyNanos.get(),
+                    (double) busyNanos.get() / (threads * (double) wallNanos), maxDepth.get(),
+                    arrivals.get() == 0 ? 0 : (double) totalDepth.get() / arrivals.get());
+        }
+    }
+
+    /**
+     * Fetches, validates and routes every order for the date, then writes the result files
+     *
+     * @param date: The date to deliver the orders for
+     * @param url: The base URL of the REST service
+     * @param resultDirectory: The directory to write the result files to
+     * @return: The routes flown and how each stage got on
+     */
+    public PipelineResult run(LocalDate date, String url, String resultDirectory) {
+        long runStart = System.nanoTime();
+
+        Stage fetch = new Stage("Fetch", fetchThreads, 0);
+        Stage validate = new Stage("Validate", validateThreads, queueCapacity);
+        Stage route = new Stage("Route", routeThreads, queueCapacity);
+        Stage write = new Stage("Write", 1, queueCapacity);
+
+        RestAccess restAccess = new RestAccess(url);
+        ExecutorService fetchPool = Executors.newFixedThreadPool(fetchThreads);
+
+        // Every REST call is started straight away, and each later stage only waits for the data it needs
+        CompletableFuture<Restaurant[]> openRestaurants =
+                CompletableFuture.supplyAsync(timed(fetch, () -> restAccess.getOpenRestaurants(date)), fetchPool);
+        CompletableFuture<NamedRegion> centralArea =
+                CompletableFuture.supplyAsync(timed(fetch, restAccess::getCentralArea), fetchPool);
+        CompletableFuture<NamedRegion[]> noFlyZones =
+                CompletableFuture.supplyAsync(timed(fetch, restAccess::getNoFlyZones), fetchPool);
+        CompletableFuture<Boolean> ordersFetched = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            // Time spent blocked on a full queue is waiting rather than working, so it's taken back out
+            AtomicLong blocked = new AtomicLong();
+            AtomicInteger sequence = new AtomicInteger();
+
+            System.out.println("Orders for " + date + ":");
+
+            // Anything going wrong while reading, including passing an order on, ends the fetch early and is
+            // reported by streamOrdersForDate returning false
+            boolean complete;
+            try {
+                complete = restAccess.streamOrdersForDate(date, order -> {
+                    long putStart = System.nanoTime();
+                    validate.put(new OrderTask(sequence.getAndIncrement(), order, null, null));
+                    blocked.addAndGet(System.nanoTime() - putStart);
+                    fetch.items.incrementAndGet();
+                });
+            } finally {
+                fetch.busyNanos.addAndGet(System.nanoTime() - start - blocked.get());
+                validate.end();
+            }
+
+            if (!complete) {
+                System.err.println("Fetching the orders for " + date + " failed after " + sequence.get()
+                        + " orders, the result files will only hold those");
+            }
+            return complete;
+        }, fetchPool);
+
+        // Only planned once the first order from each restaurant reaches the route stage, then shared
+        ConcurrentHashMap<Restaurant, CompletableFuture<Route>> restaurantRoutes = new ConcurrentHashMap<>();
+        // Built by whichever route thread gets to it first, as every router can share it
+        CompletableFuture<Heuristic> heuristic = new CompletableFuture<>();
+        AtomicInteger heuristicBuilt = new AtomicInteger();
+
+        LinkedHashMap<String, Route> paths = new LinkedHashMap<>();
+        OutputProcessor outputProcessor = new OutputProcessor(resultDirectory);
+        ResultWriter resultWriter;
+        try {
+            resultWriter = outputProcessor.openResultFiles(date, simplifiedGeoJson, simplifyTolerance);
+        } catch (IOException e) {
+            fetchPool.shutdownNow();
+            throw new RuntimeException("Could not open the result files for " + date, e);
+        }
+
+        ArrayList<Thread> threads = new ArrayList<>();
+
+        threads.addAll(start(validate, route, () -> {
+            OrderValidator orderValidator = new OrderValidator();
+            Restaurant[] restaurants = openRestaurants.join();
+
+            return task -> {
+                Order order = orderValidator.validateOrder(task.order(), restaurants);
+                Restaurant restaurant = order.getOrderStatus() == VALID_BUT_NOT_DELIVERED
+                        ? getRestaurant(order, restaurants) : null;
+
+                return new OrderTask(task.sequence(), order, restaurant, null);
+            };
+        }));
+
+        threads.addAll(start(route, write, () -> {
+            if (heuristicBuilt.getAndIncrement() == 0) {
+                try {
+                    heuristic.complete(new LandmarkHeuristic(centralArea.join(), noFlyZones.join()));
+                } catch (RuntimeException e) {
+                    heuristic.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            PathRouter router = new PathRouter(centralArea.join(), noFlyZones.join(), heuristic.join());
+
+            return task -> {
+                if (task.restaurant() == null) {return task;}
+
+                try {
+                    Route orderRoute = getRoute(task.restaurant(), router, searchThreads, restaurantRoutes, route);
+                    task.order().setOrderStatus(OrderStatus.DELIVERED);
+                    System.out.println("    > Route for order " + task.order().getOrderNo() + " completed");
+
+                    return new OrderTask(task.sequence(), task.order(), task.restaurant(), orderRoute);
+                }
+                // The order stays VALID_BUT_NOT_DELIVERED, as it was fine but the drone can't get there
+                catch (UnreachableDestinationException e) {
+                    System.err.println("    > Order " + task.order().getOrderNo() + " cannot be delivered: " + e.getMessage());
+                    return task;
+                }
+            };
+        }));
+
+        // Orders which arrived ahead of one still being routed, keyed by sequence. Only the write thread touches
+        // these until it has finished
+        TreeMap<Integer, OrderTask> waiting = new TreeMap<>();
+        AtomicInteger nextSequence = new AtomicInteger();
+
+        threads.addAll(start(write, null, () -> task -> {
+            waiting.put(task.sequence(), task);
+
+            while (!waiting.isEmpty() && waiting.firstKey() == nextSequence.get()) {
+                writeOrder(waiting.pollFirstEntry().getValue(), resultWriter, paths);
+                nextSequence.incrementAndGet();
+            }
+
+            return null;
+        }));
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the pipeline", e);
+        } finally {
+            fetchPool.shutdown();
+        }
+
+        long finishStart = System.nanoTime();
+
+        // Every order fetched should have reached the write stage, but if one was lost on the way, those after
+        // it are still waiting for it. They're written anyway, so the files hold every order that got through
+        List<Integer> missing = new ArrayList<>();
+        for (int sequence = nextSequence.get(); sequence < fetch.items.get(); sequence++) {
+            if (!waiting.containsKey(sequence)) {
+                missing.add(sequence);
+            }
+        }
+        if (!missing.isEmpty()) {
+            System.err.println("Orders " + missing + " of " + date + " never reached the write stage, so are "
+                    + "missing from the result files");
+        }
+        for (OrderTask task : waiting.values()) {
+            writeOrder(task, resultWriter, paths);
+        }
+        waiting.clear();
+
+        try {
+            resultWriter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        write.busyNanos.addAndGet(System.nanoTime() - finishStart);
+
+        long wallNanos = System.nanoTime() - runStart;
+        List<StageReport> reports = List.of(fetch.report(wallNanos), validate.report(wallNanos),
+                route.report(wallNanos), write.report(wallNanos));
+
+        // A fetch that broke down outside streamOrdersForDate, passing on END for instance, is no more complete
+        boolean ordersComplete = ordersFetched.exceptionally(e -> {
+            e.printStackTrace();
+            return false;
+        }).join();
+
+        return new PipelineResult(paths, wallNanos, reports, ordersComplete);
+    }
+
+    /**
+     * Adds an order to the result files, and its route to those flown if it was delivered
+     *
+     * @param task: The order, once through every other stage
+     * @param resultWriter: The day's result files
+     * @param paths: The routes flown so far, keyed by order number
+     */
+    private static void writeOrder(OrderTask task, ResultWriter resultWriter, LinkedHashMap<String, Route> paths) {
+        try {
+            resultWriter.write(task.order(), task.route(), task.restaurant() == null ? null : task.restaurant().name());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        if (task.route() != null) {
+            paths.put(task.order().getOrderNo(), task.route());
+        }
+    }
+
+    /**
+     * Starts the stage's threads. Each takes orders from the stage's queue until told there are no more,
+     * works on them and passes the result on to the next stage. Once every thread has finished, the next
+     * stage is told there are no more orders
+     *
+     * @param stage: The stage to start
+     * @param next: The stage to pass orders on to, or null for the last stage
+     * @param workFactory: Called once on each thread, to set up anything the thread needs before giving the
+     *                     work to do on each order
+     * @return: The stage's threads
+     */
+    private static List<Thread> start(Stage stage, Stage next, Supplier<UnaryOperator<OrderTask>> workFactory) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger(stage.threads);
+
+        for (int id = 0; id < stage.threads; id++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    UnaryOperator<OrderTask> work;
+                    try {
+                        work = workFactory.get();
+                    }
+                    // Without what it needs the thread can't do its work, but orders still have to get through
+                    catch (RuntimeException e) {
+                        e.printStackTrace();
+                        work = task -> task;
+                    }
+
+                    while (true) {
+                        OrderTask task = stage.input.take();
+                        if (task == END) {break;}
+
+                        long start = System.nanoTime();
+                        OrderTask result;
+
+                        try {
+                            result = work.apply(task);
+                        }
+                        // Every order has to reach the write stage for the files to be finished, so one that
+                        // fails is passed on as it was
+                        catch (RuntimeException e) {
+                            e.printStackTrace();
+                            result = task;
+                        }
+
+                        stage.busyNanos.addAndGet(System.nanoTime() - start);
+                        stage.items.incrementAndGet();
+
+                        if (next != null) {
+                            next.put(result);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (running.decrementAndGet() == 0 && next != null) {
+                        next.end();
+                    }
+                }
+            }, stage.name.toLowerCase() + "-" + id);
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        return threads;
+    }
+
+    /**
+     * @param stage: The stage to count the time against
+     * @param call: The REST call to make
+     * @return: The same call, with the time it takes added to the stage
+     */
+    private static <T> Supplier<T> timed(Stage stage, Supplier<T> call) {
+        return () -> {
+            long start = System.nanoTime();
+            T result = call.get();
+            stage.busyNanos.addAndGet(System.nanoTime() - start);
+            return result;
+        };
+    }
+
+    /**
+     * Gets the route for a restaurant, planning it if no other order has asked for it yet. If another
+     * thread is already planning it, this waits for that route rather than planning it again
+     *
+     * @param restaurant: The restaurant to route from
+     * @param router: The router to plan the route with, if needed
+     * @param searchThreads: The number of threads to search for the route with
+     * @param restaurantRoutes: The routes planned or being planned so far
+     * @param stage: The stage to take any time spent waiting for another thread's route back out of
+     * @return: The route from Appleton Tower out to the restaurant
+     * @throws UnreachableDestinationException: If there is no route to the restaurant
+     */
+    private static Route getRoute(Restaurant restaurant, PathRouter router, int searchThreads,
+                                  ConcurrentHashMap<Restaurant, CompletableFuture<Route>> restaurantRoutes,
+                                  Stage stage) {
+        CompletableFuture<Route> planned = new CompletableFuture<>();
+        CompletableFuture<Route> existing = restaurantRoutes.putIfAbsent(restaurant, planned);
+
+        if (existing == null) {
+            try {
+                // Routes are planned out from Appleton Tower, so both legs start and finish exactly at the tower.
+                // The drone may enter the central area on its way back but may never leave it again, which
+                // the outbound route obeys when flown in reverse
+                planned.complete(router.getOutboundRoute(APPLETON_TOWER, restaurant.location(), searchThreads));
+                System.out.println("> Route for restaurant " + restaurant.name() + " completed (" + router.getExpandedNodes() + " positions expanded)");
+            } catch (RuntimeException e) {
+                planned.completeExceptionally(e);
+            }
+            existing = planned;
+        }
+
+        // Waiting on another thread's route is idle time rather than work, so it isn't counted as busy
+        long waitStart = System.nanoTime();
+        try {
+            return existing.join();
+        } catch (CompletionException e) {
+            // Rethrown as it was, so an unreachable restaurant is reported the same for every order from it
+            throw (RuntimeException) e.getCause();
+        } finally {
+            if (existing != planned) {
+                stage.busyNanos.addAndGet(-(System.nanoTime() - waitStart));
+            }
+        }
+    }
+
+    /**
+     * Get the restaurant for the order. When this is called we know the order is valid, so must only have
+     * one restaurant as part of the order
+     *
+     * @param order: The order whose restaurant we want to determine
+     * @param openRestaurants: The list of restaurants currently open
+     * @return: The restaurant ordered from
+     */
+    private static Restaurant getRestaurant(Order order, Restaurant[] openRestaurants) {
+        // For each of the restaurants,
+        for (Restaurant restaurant : openRestaurants) {
+            // If the restaurant menu contains the pizza, it must be the restaurant we've ordered from
+            if (Arrays.asList(restaurant.menu()).contains(order.getPizzasInOrder()[0])) {
+                return restaurant;
+            }
+        }
+        // Shouldn't ever reach here, assuming the OrderValidator is doing its job
+        return null;
+    }
+
+    /**
+     * Prints how each stage got on, so the stage holding the others up can be picked out: it is the one busy
+     * for most of the run, with the queue in front of it full and the queues after it mostly empty
+     *
+     * @param result: The outcome of a run
+     */
+    public static void printReport(PipelineResult result) {
+        System.out.println();
+        System.out.printf("Pipeline finished in %.2fms%n", result.wallNanos() / 1e6);
+        if (!result.ordersComplete()) {
+            System.out.println("Not every order could be fetched, so the results are incomplete");
+        }
+        System.out.printf("%-10s %8s %8s %10s %8s %12s %12s%n",
+                "Stage", "Threads", "Orders", "Busy (ms)", "Busy %", "Max queued", "Mean queued");
+
+        for (StageReport stage : result.stages()) {
+            System.out.printf("%-10s %8d %8d %10.2f %7.1f%% %12d %12.2f%n", stage.name(), stage.threads(),
+                    stage.items(), stage.busyNanos() / 1e6, stage.utilisation() * 100,
+                    stage.maxQueueDepth(), stage.meanQueueDepth());
+        }
+    }
+}
@@ -1,28 +1,32 @@
 package uk.ed.ac.info;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.Order;
-import uk.ac.ed.inf.ilp.gsonUtils.LocalDateSerializer;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class OutputProcessor {
     Path resultDir;
+    // Only opened once something is archived
+    private DeliveryArchive archive;
+
     public OutputProcessor() {
         // Results are stored in PizzaDronz/resultfiles/, but that directory may not exist by default
-        this.resultDir = FileSystems.getDefault().getPath("resultfiles");
+        this("resultfiles");
+    }
+
+    public OutputProcessor(String directory) {
+        this.resultDir = FileSystems.getDefault().getPath(directory);
 
         // Creating a directory that already exists throws an IOException
         try {
@@ -35,97 +39,139 @@ public class OutputProcessor {
         }
     }
 
-    public void writeDeliveries(String filename, Order[] orders) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateSerializer()).setPrettyPrinting().create();
-
-        try (FileWriter writer = new FileWriter(resultDir.getFileName() + filename)) {
-            gson.toJson(orders, writer);
-            System.out.println("File created: " + filename);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Opens the day's result files, to be written one order at a time rather than all at once
+     *
+     * @param date: The day the orders are for
+     * @param writeSimplified: Whether to also write the simplified GeoJSON
+     * @param tolerance: How far the simplified GeoJSON may stray from the path flown, in degrees
+     * @return: The writer, which must be closed to finish off the files
+     */
+    public ResultWriter openResultFiles(LocalDate date, boolean writeSimplified, double tolerance) throws IOException {
+        return new ResultWriter(this, date, writeSimplified, tolerance);
     }
 
-    public void writeFlightpathJson(String filename, HashMap<String, ArrayList<PathNode>> paths) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
-        try (FileWriter writer = new FileWriter(resultDir.getFileName() + filename)) {
-            JsonArray flightpath = convertFlightpathToJson(paths);
-            gson.toJson(flightpath, writer);
-            System.out.println("File created: " + filename);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Adds orders to the delivery archive in the results directory, so they can be looked up later without
+     * reading back every deliveries file
+     *
+     * @param date: The day the orders were processed for
+     * @param orders: The orders, after validation and delivery
+     * @param restaurantNames: The restaurant of each order that has one, keyed by order number
+     * @return: The number of orders written, which leaves out any already archived unchanged
+     */
+    int archiveOrders(LocalDate date, Order[] orders, Map<String, String> restaurantNames) throws IOException {
+        if (archive == null) {
+            archive = new DeliveryArchive(resultDir.resolve("archive"));
         }
+
+        return archive.append(date, orders, restaurantNames);
     }
 
-    public void writePathGeoJson(String filename, HashMap<String, ArrayList<PathNode>> paths) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * Each order's route is planned once per restaurant, from Appleton Tower out to the restaurant
+     *
+     * @param route: The order's route
+     * @return: The legs flown for the order: out to the restaurant along the route, then back along it in reverse
+     */
+    private static Route[] legs(Route route) {
+        return new Route[] {route, route.reversed()};
+    }
 
-        try (FileWriter writer = new FileWriter(resultDir.getFileName() + filename)) {
-            JsonObject geoJson = convertToGeoJson(paths);
-            gson.toJson(geoJson, writer);
-            System.out.println("File created: " + filename);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Writes the flightpath records for every step flown for an order
+     *
+     * @param writer: The writer, inside the flightpath's array of records
+     * @param orderNo: The order number
+     * @param route: The order's route
+     */
+    static void writeFlightpathRecords(JsonWriter writer, String orderNo, Route route) throws IOException {
+        for (Route leg : legs(route)) {
+            for (int step = 0; step < leg.size(); step++) {
+                writer.beginObject();
+                writer.name("orderNo").value(orderNo);
+                writer.name("fromLongitude").value(leg.fromLng(step));
+                writer.name("fromLatitude").value(leg.fromLat(step));
+                writer.name("angle").value(leg.angle(step));
+                writer.name("toLongitude").value(leg.toLng(step));
+                writer.name("toLatitude").value(leg.toLat(step));
+                writer.endObject();
+            }
         }
     }
 
-    private static JsonArray convertFlightpathToJson(HashMap<String, ArrayList<PathNode>> paths) {
-        JsonArray totalJson = new JsonArray();
-
-        for (Map.Entry<String, ArrayList<PathNode>> path : paths.entrySet()) {
-            for (PathNode node : path.getValue()) {
-                JsonObject record = new JsonObject();
-
-                record.addProperty("orderNo", path.getKey());
-                record.addProperty("fromLongitude", node.prev().lng());
-                record.addProperty("fromLatitude", node.prev().lat());
-                record.addProperty("angle", node.angle());
-                record.addProperty("fromLongitude", node.curr().lng());
-                record.addProperty("fromLatitude", node.curr().lat());
-
-                totalJson.add(record);
+    /**
+     * Writes a GeoJSON feature for an order, with a line through every position flown
+     *
+     * @param writer: The writer, inside the GeoJSON's array of features
+     * @param route: The order's route
+     */
+    static void writePathFeature(JsonWriter writer, Route route) throws IOException {
+        writer.beginObject();
+        writer.name("type").value("Feature");
+        writer.name("geometry").beginObject();
+        writer.name("type").value("LineString");
+        writer.name("coordinates").beginArray();
+
+        for (Route leg : legs(route)) {
+            for (int step = 0; step < leg.size(); step++) {
+                writer.beginArray().value(leg.toLng(step)).value(leg.toLat(step)).endArray();
             }
         }
 
-        return totalJson;
+        writer.endArray();
+        writer.endObject();
+        writer.name("properties").beginObject().endObject();
+        writer.endObject();
     }
 
-    private static JsonObject convertToGeoJson(HashMap<String, ArrayList<PathNode>> paths) {
-        JsonObject totalJson = new JsonObject();
-        JsonArray features = new JsonArray();
-        Gson gson = new GsonBuilder().create();
-
-        for (Map.Entry<String, ArrayList<PathNode>> path : paths.entrySet()) {
-            JsonObject feature = new JsonObject();
-            JsonObject geometry = new JsonObject();
-            JsonObject properties = new JsonObject();
-
-            List<JsonArray> pointList = path
-                    .getValue()
-                    .stream()
-                    .map(point -> {
-                        JsonArray entry = new JsonArray();
-                        entry.add(point.curr().lng());
-                        entry.add(point.curr().lat());
-                        return entry;
-                    })
-                    .toList();
+    /**
+     * @param orderNo: The order number
+     * @param route: The order's route
+     * @param restaurant: The name of the restaurant the order came from
+     * @param tolerance: How far the simplified line may stray from the path flown, in degrees
+     * @return: A GeoJSON feature for the order, lighter than writePathFeature's for viewing on a map. Runs of
+     *          moves in the same direction are collapsed to their ends and, if tolerance is above zero, the
+     *          Douglas-Peucker algorithm drops any points within tolerance of the line. The feature carries the
+     *          order number, move count and restaurant
+     */
+    static JsonObject simplifiedFeature(String orderNo, Route route, String restaurant, double tolerance) {
+        JsonObject feature = new JsonObject();
+        JsonObject geometry = new JsonObject();
+        JsonObject properties = new JsonObject();
+
+        // Both legs make one line, meeting at the restaurant
+        List<LngLat> points = new ArrayList<>();
+        int moveCount = 0;
+        for (Route leg : legs(route)) {
+            List<LngLat> legPoints = PathSimplifier.collapseRuns(leg);
+            points.addAll(points.isEmpty() ? legPoints : legPoints.subList(1, legPoints.size()));
+            moveCount += leg.size();
+        }
 
-            geometry.addProperty("type", "LineString");
-            geometry.add("coordinates", gson.toJsonTree(pointList));
+        if (tolerance > 0) {
+            points = PathSimplifier.douglasPeucker(points, tolerance);
+        }
 
-            feature.addProperty("type", "Feature");
-            feature.add("geometry", geometry);
+        JsonArray coordinates = new JsonArray();
+        for (LngLat point : points) {
+            JsonArray entry = new JsonArray();
+            entry.add(point.lng());
+            entry.add(point.lat());
+            coordinates.add(entry);
+        }
 
-            feature.add("properties", properties);
+        geometry.addProperty("type", "LineString");
+        geometry.add("coordinates", coordinates);
 
-            features.add(feature);
-        }
+        properties.addProperty("orderNo", orderNo);
+        properties.addProperty("moveCount", moveCount);
+        properties.addProperty("restaurant", restaurant);
 
-        totalJson.addProperty("type", "FeatureCollection");
-        totalJson.add("features", features);
+        feature.addProperty("type", "Feature");
+        feature.add("geometry", geometry);
+        feature.add("properties", properties);
 
-        return totalJson;
+        return feature;
     }
 }
@@ -0,0 +1,81 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import static uk.ed.ac.info.PizzaDronzConstants.APPLETON_TOWER;
+
+/**
+ * Times the longest restaurant route with the parallel search at increasing thread counts, checking each
+ * time that the route costs the same as the one found by the sequential search. The heuristic can be given
+ * after the URL as euclidean, lattice or landmark (the default). The landmark heuristic leaves so little
+ * searching to do that extra threads mostly add overhead, so euclidean shows better what the threads can share.
+ *
+ * The times only show how the search scales when there is a processor for every thread. On fewer processors the
+ * threads take turns, so the expanded counts show the extra work the threads do, but not whether it pays off
+ */
+public class ParallelRouteBenchmark {
+    public static void main(String[] args) {
+        String url = args.length > 0 ? args[0] : PizzaDronzConstants.DEFAULT_REST_URL;
+        int[] threadCounts = {1, 2, 4, 8, 16};
+        int repeats = 5;
+        String heuristicName = args.length > 1 ? args[1] : "landmark";
+
+        RestAccess restAccess = new RestAccess(url);
+        NamedRegion centralArea = restAccess.getCentralArea();
+        NamedRegion[] noFlyZones = restAccess.getNoFlyZones();
+
+        Heuristic heuristic = switch (heuristicName) {
+            case "euclidean" -> new EuclideanHeuristic();
+            case "lattice" -> new LatticeHeuristic();
+            case "landmark" -> new LandmarkHeuristic(centralArea, noFlyZones);
+            default -> throw new IllegalArgumentException("Unknown heuristic: " + heuristicName);
+        };
+        PathRouter router = new PathRouter(centralArea, noFlyZones, heuristic);
+
+        // The longest route is the one where the parallel search has the most to gain
+        Restaurant longest = null;
+        int sequentialMoves = 0;
+
+        for (Restaurant restaurant : restAccess.getRestaurants()) {
+            try {
+                int moves = router.getOutboundRoute(APPLETON_TOWER, restaurant.location()).size();
+                if (moves > sequentialMoves) {
+                    longest = restaurant;
+                    sequentialMoves = moves;
+                }
+            } catch (UnreachableDestinationException e) {
+                System.out.println("Skipping " + restaurant.name() + ", it can't be reached");
+            }
+        }
+
+        if (longest == null) {
+            System.err.println("No restaurant could be reached");
+            return;
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Longest route: " + longest.name() + " (" + sequentialMoves + " moves, "
+                + heuristicName + " heuristic, " + processors + " processors)");
+        if (processors < threadCounts[threadCounts.length - 1]) {
+            System.out.println("Scaling not measured: there are more threads than the " + processors
+                    + " available processors, so the threads take turns");
+        }
+        System.out.printf("%8s %10s %12s %8s%n", "Threads", "Expanded", "Best (ms)", "Moves");
+
+        for (int threads : threadCounts) {
+            double bestMillis = Double.POSITIVE_INFINITY;
+            Route route = null;
+
+            // The first run of each thread count also warms up the JIT, so only the best run is reported
+            for (int i = 0; i < repeats; i++) {
+                long routeStart = System.nanoTime();
+                route = router.getOutboundRoute(APPLETON_TOWER, longest.location(), threads);
+                bestMillis = Math.min(bestMillis, (System.nanoTime() - routeStart) / 1e6);
+            }
+
+            System.out.printf("%8d %10d %12.1f %8d%s%n", threads, router.getExpandedNodes(), bestMillis, route.size(),
+                    route.size() == sequentialMoves ? "" : "  (differs from sequential!)");
+        }
+    }
+}
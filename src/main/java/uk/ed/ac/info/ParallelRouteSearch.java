@@ -0,0 +1,279 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single route search spread across several threads, following HDA* (Hash Distributed A*)
+ *
+ * The search runs over MoveLattice positions, so every position has one exact key however it was reached, and is
+ * owned by exactly one worker, chosen by hashing the key. Each worker keeps its own open list and record of the
+ * best step count seen for the positions it owns, so no locking is needed and a position is never expanded twice
+ * for the same cost. When a worker generates a position owned by another worker it is passed over through that
+ * worker's lock-free inbox.
+ *
+ * Finding the destination doesn't end the search straight away, as another worker may still hold a cheaper
+ * route. Workers carry on until nothing left anywhere could beat the best route found so far. A worker with
+ * nothing to do spins briefly, then parks until another worker sends it something or the search ends, so idle
+ * workers don't take processor time from the ones with work
+ */
+class ParallelRouteSearch {
+    // Work usually turns up again within a few microseconds, so it's worth spinning this many times before parking
+    private static final int IDLE_SPINS = 100;
+    // Parked workers are woken whenever they're needed, this only bounds how long a missed wake-up could cost
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final PathRouter router;
+    private final LngLat start;
+    private final LngLat dest;
+    private final boolean outbound;
+    private final int threads;
+    private final MoveLattice lattice;
+
+    private final List<ConcurrentLinkedQueue<PathRouter.LatticeNode>> inboxes = new ArrayList<>();
+    private final Thread[] workers;
+
+    // Messages still waiting in an inbox plus workers with something left to do. Once this reaches zero
+    // no worker can ever be given anything new, so the search is over
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicReference<PathRouter.LatticeNode> bestGoal = new AtomicReference<>();
+    private final AtomicInteger expandedNodes = new AtomicInteger();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    // Set if the route strays further from start than the lattice can hold
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+
+    /**
+     * @param outbound: Whether the route is planned with the mirrored central area rule, see
+     *                  PathRouter.getOutboundRoute
+     */
+    ParallelRouteSearch(PathRouter router, LngLat start, LngLat dest, boolean outbound, int threads) {
+        this.router = router;
+        this.start = start;
+        this.dest = dest;
+        this.outbound = outbound;
+        this.threads = threads;
+        this.lattice = new MoveLattice(start);
+        this.workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            inboxes.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * @return: The number of positions expanded across every worker
+     */
+    int getExpandedNodes() {
+        return expandedNodes.get();
+    }
+
+    /**
+     * Runs the search to completion
+     *
+     * @return: The route found, or null if the search needed more moves along one axis than the lattice can hold
+     * @throws UnreachableDestinationException: If the search runs out of positions without reaching dest
+     */
+    Route run() {
+        send(new PathRouter.LatticeNode(MoveLattice.ORIGIN, null, -1, 0, 0));
+
+        for (int id = 0; id < threads; id++) {
+            int workerId = id;
+            workers[id] = new Thread(() -> work(workerId), "route-worker-" + id);
+            workers[id].start();
+        }
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for route workers", e);
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        if (overflowed.get()) {
+            return null;
+        }
+
+        PathRouter.LatticeNode goal = bestGoal.get();
+        if (goal == null) {
+            throw new UnreachableDestinationException(start, dest);
+        }
+
+        return PathRouter.toRoute(goal, lattice);
+    }
+
+    /**
+     * The loop each worker runs: take in any positions passed over, then expand the most promising
+     * position held, until the whole search is finished
+     *
+     * @param id: The worker's index, which decides the positions it owns
+     */
+    private void work(int id) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        ConcurrentLinkedQueue<PathRouter.LatticeNode> inbox = inboxes.get(id);
+
+        PriorityQueue<PathRouter.LatticeNode> open = new PriorityQueue<>(Comparator.comparingDouble(PathRouter.LatticeNode::f));
+        HashMap<Long, Integer> bestSteps = new HashMap<>();
+        // Region flags for every position this worker has looked at, whoever owns it
+        HashMap<Long, Byte> flags = new HashMap<>();
+        boolean busy = false;
+        int idleSpins = 0;
+
+        try {
+            while (outstanding.get() > 0 && failure.get() == null && !overflowed.get()) {
+                PathRouter.LatticeNode received;
+                while ((received = inbox.poll()) != null) {
+                    // Counting this worker as busy before the message is let go means the total never
+                    // drops to zero while the message is still being dealt with
+                    if (!busy) {
+                        outstanding.incrementAndGet();
+                        busy = true;
+                    }
+                    idleSpins = 0;
+
+                    Integer steps = bestSteps.get(received.key());
+                    if (steps == null || received.step() < steps) {
+                        bestSteps.put(received.key(), received.step());
+                        open.add(received);
+                    }
+
+                    release();
+                }
+
+                // Positions which can't beat the best route found so far are never worth expanding
+                while (!open.isEmpty() && !canImprove(open.peek())) {
+                    open.poll();
+                }
+
+                if (open.isEmpty()) {
+                    if (busy) {
+                        release();
+                        busy = false;
+                    }
+
+                    if (++idleSpins < IDLE_SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+
+                PathRouter.LatticeNode current = open.poll();
+
+                // A cheaper way to this position has turned up since it was added
+                if (current.step() > bestSteps.get(current.key())) {continue;}
+
+                expandedNodes.incrementAndGet();
+                LngLat position = lattice.toLngLat(current.key());
+
+                if (lngLatHandler.isCloseTo(position, dest)) {
+                    offerGoal(current);
+                    continue;
+                }
+
+                // Whether a successor has been reached as cheaply before is only known to its owner,
+                // so every successor is sent and the owner decides
+                List<PathRouter.LatticeNode> successors = router.getLatticeSuccessors(current, position, dest,
+                        lattice, flags, lngLatHandler, outbound, key -> true);
+
+                if (successors == null) {
+                    overflowed.set(true);
+                    wakeAll();
+                    continue;
+                }
+
+                for (PathRouter.LatticeNode child : successors) {
+                    if (canImprove(child)) {
+                        send(child);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            wakeAll();
+        }
+    }
+
+    /**
+     * Passes a position over to the worker which owns it
+     *
+     * @param node: The lattice node to pass over
+     */
+    private void send(PathRouter.LatticeNode node) {
+        // Counted before it is visible to the owner, so the owner can never uncount it first
+        outstanding.incrementAndGet();
+
+        int owner = owner(node.key());
+        inboxes.get(owner).add(node);
+        // If the owner is parked it wakes straight away, and if it's about to park it won't
+        LockSupport.unpark(workers[owner]);
+    }
+
+    /**
+     * Uncounts a message or a worker that was busy, waking every worker if that was the last thing outstanding
+     * so they can all see the search has finished
+     */
+    private void release() {
+        if (outstanding.decrementAndGet() == 0) {
+            wakeAll();
+        }
+    }
+
+    private void wakeAll() {
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * @param key: The lattice position to find the owner of
+     * @return: The index of the worker which owns the position
+     */
+    private int owner(long key) {
+        // Fibonacci hashing spreads keys which only differ by a move or two, i.e. in their low bits,
+        // right across the top 32 bits
+        return Math.floorMod((int) ((key * 0x9E3779B97F4A7C15L) >>> 32), threads);
+    }
+
+    /**
+     * Records a route to dest, if it is cheaper than the best found so far
+     *
+     * @param goal: The lattice node which reached dest
+     */
+    private void offerGoal(PathRouter.LatticeNode goal) {
+        PathRouter.LatticeNode best = bestGoal.get();
+
+        while (best == null || goal.step() < best.step()) {
+            if (bestGoal.compareAndSet(best, goal)) {return;}
+            best = bestGoal.get();
+        }
+    }
+
+    /**
+     * @param node: The lattice node to check
+     * @return: Whether a route through node could still be cheaper than the best route found so far
+     */
+    private boolean canImprove(PathRouter.LatticeNode node) {
+        PathRouter.LatticeNode best = bestGoal.get();
+        // Anywhere within DRONE_IS_CLOSE_DISTANCE of dest counts as reaching it, so h(pos) can be up to that much
+        // more than the moves left, and a route through node saving even one move can have g(pos) + h(pos) up to
+        // one move short of best plus that. f(pos) only carries the router's tie break on top, far less than
+        // half a move
+        return best == null || node.f() < (best.step() - 1) * SystemConstants.DRONE_MOVE_DISTANCE
+                + SystemConstants.DRONE_IS_CLOSE_DISTANCE + SystemConstants.DRONE_MOVE_DISTANCE / 2;
+    }
+}
@@ -0,0 +1,13 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * A position reached by the floating-point searches in PathRouter
+ *
+ * @param curr: The position reached
+ * @param prev: The position moved from, or null at the start
+ * @param angle: The direction of the move from prev, or HOVER at the start and for the final hover
+ * @param step: The number of moves taken to reach curr
+ */
+record PathNode(LngLat curr, LngLat prev, Double angle, int step) {}
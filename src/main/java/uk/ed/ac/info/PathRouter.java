@@ -5,55 +5,202 @@ import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 
 import java.util.*;
-
-record PathNode(LngLat curr, LngLat prev, Double angle, int step) {}
+import java.util.function.LongPredicate;
 
 public class PathRouter {
     private final int ANGLES = 16;
     private final NamedRegion centralArea;
     private final NamedRegion[] noFlyZones;
-    private final Double HOVER = 999.0;
+    static final Double HOVER = 999.0;
+    // Scales h(pos) up ever so slightly, so that between positions with the same f(pos) the one
+    // closer to dest wins. Without this the router wanders between equally good orderings of the same moves
+    static final double TIE_BREAK = 1e-6;
+    private final AirspaceConnectivity connectivity;
+    private final Heuristic heuristic;
+    private final SearchSpace searchSpace;
+    private int expandedNodes = 0;
+
+    // Flags cached for each lattice position by getLatticeRoute
+    private static final byte IN_CENTRAL = 1;
+    private static final byte IN_NO_FLY_ZONE = 2;
+
+    /**
+     * A position reached by the lattice search, along with how it was reached
+     *
+     * @param key: The position, as packed by MoveLattice
+     * @param parent: The node the move was made from, or null at the start
+     * @param direction: The index of the direction moved in to get here
+     * @param step: The number of moves made so far
+     * @param f: The value of f(pos) for the node
+     */
+    record LatticeNode(long key, LatticeNode parent, int direction, int step, double f) {}
+
+    /**
+     * The positions getRoute searches over
+     */
+    public enum SearchSpace {
+        // Whole numbers of each move from the start, as packed by MoveLattice, so a position reached by two
+        // different sequences of moves is recognised as the same position and only expanded once. A search that
+        // strays further from the start than the lattice can hold is run again over FLOAT
+        LATTICE,
+        // The same search over positions worked out move by move in floating point. Two positions only count
+        // as the same if they come out bit for bit equal. Around Edinburgh every position shares an exponent
+        // with the start, so adding the fixed move vectors rounds the same way in any order and these match
+        // the lattice keys, but that is a property of the airspace rather than something to rely on
+        FLOAT,
+        // The original search over floating-point positions, which once underway only keeps the most promising
+        // successor whenever every direction is open. It expands the fewest positions, but can miss the
+        // optimal route
+        PRUNED_FLOAT
+    }
 
     public PathRouter(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        this(centralArea, noFlyZones, new AirspaceGrid(centralArea, noFlyZones));
+    }
+
+    private PathRouter(NamedRegion centralArea, NamedRegion[] noFlyZones, AirspaceGrid grid) {
+        this(centralArea, noFlyZones, grid, new LandmarkHeuristic(grid), SearchSpace.LATTICE);
+    }
+
+    public PathRouter(NamedRegion centralArea, NamedRegion[] noFlyZones, Heuristic heuristic) {
+        this(centralArea, noFlyZones, heuristic, SearchSpace.LATTICE);
+    }
+
+    /**
+     * @param searchSpace: The positions getRoute searches over. The lattice is the only one that finds the optimal
+     *                     route without expanding the same area many times over
+     */
+    public PathRouter(NamedRegion centralArea, NamedRegion[] noFlyZones, Heuristic heuristic, SearchSpace searchSpace) {
+        // A LandmarkHeuristic has already split the same airspace into a grid, so there's no need for another
+        this(centralArea, noFlyZones, heuristic instanceof LandmarkHeuristic landmarks
+                ? landmarks.getGrid() : new AirspaceGrid(centralArea, noFlyZones), heuristic, searchSpace);
+    }
+
+    /**
+     * @param grid: The airspace grid for the central area and no-fly zones, which the connectivity check is
+     *              built from
+     */
+    PathRouter(NamedRegion centralArea, NamedRegion[] noFlyZones, AirspaceGrid grid, Heuristic heuristic,
+               SearchSpace searchSpace) {
         this.centralArea = centralArea;
         this.noFlyZones = noFlyZones;
+        this.connectivity = new AirspaceConnectivity(centralArea, grid);
+        this.heuristic = heuristic;
+        this.searchSpace = searchSpace;
     }
 
-
+    /**
+     * @return: The number of positions expanded by the most recent call to getRoute
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
 
     /**
      * Uses the A* algorithm to determine the most efficient route from the start to the destination
      * A* uses a function h(pos) which is defined as follows, f(pos) = g(pos) + h(pos)
      *  - g(pos) is the actual distance travelled from start to pos, i.e number of steps * move distance
-     *  - h(pos) is the predicted distance between pos and dest, using Euclidean distance as a heuristic
+     *  - h(pos) is the predicted distance between pos and dest, given by the router's Heuristic
+     *
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @return: The optimal route from start to dest, finishing with a hover once close to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    public Route getRoute(LngLat start, LngLat dest) {
+        return getRoute(start, dest, false);
+    }
+
+    /**
+     * Plans a route out from start to dest, for a drone that will fly it back again. Here the central area rule
+     * is mirrored: once the drone has left the central area it may not enter it again. Flown in reverse, from
+     * dest back to start, the route then never leaves the central area once inside it.
+     *
+     * So a route planned out from Appleton Tower can be flown both ways, and both legs meet exactly at the tower,
+     * rather than at whichever point close to it a search towards the tower happens to finish on
+     *
+     * @param start: The start point for pathing, where the route flown back finishes exactly
+     * @param dest: The end point for pathing
+     * @return: The optimal route from start to dest, finishing with a hover once close to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    public Route getOutboundRoute(LngLat start, LngLat dest) {
+        return getRoute(start, dest, true);
+    }
+
+    /**
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @param outbound: Whether to plan with the mirrored central area rule, as getOutboundRoute describes
+     * @return: The optimal route from start to dest, finishing with a hover once close to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    private Route getRoute(LngLat start, LngLat dest, boolean outbound) {
+        // Searching for a destination we can never reach would only stop once every position had been tried
+        if (!isReachable(start, dest, outbound)) {
+            throw new UnreachableDestinationException(start, dest);
+        }
+
+        if (searchSpace == SearchSpace.PRUNED_FLOAT) {
+            return getPrunedRoute(start, dest, outbound);
+        }
+
+        if (searchSpace == SearchSpace.LATTICE) {
+            Route route = getLatticeRoute(start, dest, outbound);
+
+            if (route != null) {
+                return route;
+            }
+            logLatticeOverflow(start, dest);
+        }
+
+        return getFloatRoute(start, dest, outbound);
+    }
+
+    /**
+     * Notes that a lattice search gave up, so the unpruned float search is being run in its place. That search
+     * still finds the optimal route, but expands the same area many times over, so it's worth knowing about
      *
      * @param start: The start point for pathing
      * @param dest: The end point for pathing
-     * @return: The optimal list of moves to make to get from start to dest,
-     *          as a list of coordinates resulting from taking those steps
      */
-    public ArrayList<PathNode> getRoute(LngLat start, LngLat dest) {
+    private static void logLatticeOverflow(LngLat start, LngLat dest) {
+        System.err.println("Route from " + start + " to " + dest + " needed more than " + Byte.MAX_VALUE
+                + " moves along one axis, searching floating-point positions instead");
+    }
+
+    /**
+     * The original search over floating-point positions, which getSuccessors prunes
+     *
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @param outbound: Whether to plan with the mirrored central area rule
+     * @return: A route from start to dest, finishing with a hover once close to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    private Route getPrunedRoute(LngLat start, LngLat dest, boolean outbound) {
         ArrayList<PathNode> visited = new ArrayList<>();
         LngLatHandler lngLatHandler = new LngLatHandler();
 
         PathNode node = new PathNode(start, null, 999.0, 0);
+        expandedNodes = 1;
 
         visited.add(node);
-        HashMap<PathNode, Double> frontier = new HashMap<>(getValidAdjacentPoints(node, dest, visited));
+        HashMap<PathNode, Double> frontier = new HashMap<>(getSuccessors(node, dest, visited, outbound));
 
         while (!lngLatHandler.isCloseTo(node.curr(), dest)) {
+            // The connectivity check is deliberately generous, so the search itself may still run dry
+            if (frontier.isEmpty()) {
+                throw new UnreachableDestinationException(start, dest);
+            }
+
             node = Collections.min(frontier.entrySet(), Map.Entry.comparingByValue()).getKey();
 
             visited.add(node);
             frontier.remove(node);
+            expandedNodes++;
 
-            HashMap<PathNode, Double> newFrontier = getValidAdjacentPoints(node, dest, visited);
-            if (newFrontier.size() < ANGLES) {
-                frontier.putAll(newFrontier);
-            } else {
-                Map.Entry<PathNode, Double> minPair = Collections.min(newFrontier.entrySet(), Map.Entry.comparingByValue());
-                frontier.put(minPair.getKey(), minPair.getValue());
-            }
+            frontier.putAll(getSuccessors(node, dest, visited, outbound));
         }
 
         ArrayList<PathNode> finalPath = new ArrayList<>();
@@ -71,19 +218,103 @@ public class PathRouter {
             }
         }
 
-        return finalPath;
+        return Route.fromBacktrack(finalPath);
+    }
+
+    /**
+     * Spreads the lattice search across several threads in the style of HDA* (Hash Distributed A*), which helps
+     * when a single long route dominates the run time. The lattice is always used, whatever the router's
+     * SearchSpace, as each position has to hash to the same thread however it is reached.
+     * With an admissible Heuristic the route found costs the same as the one getRoute finds over the lattice
+     *
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @param threads: The number of threads to search with, one thread falls back to getRoute
+     * @return: The optimal route from start to dest, finishing with a hover once close to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    public Route getRoute(LngLat start, LngLat dest, int threads) {
+        return getRoute(start, dest, false, threads);
+    }
+
+    /**
+     * The same as getOutboundRoute, spread across several threads as the parallel getRoute is
+     *
+     * @param start: The start point for pathing, where the route flown back finishes exactly
+     * @param dest: The end point for pathing
+     * @param threads: The number of threads to search with, one thread falls back to getOutboundRoute
+     * @return: The optimal route from start to dest, finishing with a hover once close to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    public Route getOutboundRoute(LngLat start, LngLat dest, int threads) {
+        return getRoute(start, dest, true, threads);
+    }
+
+    private Route getRoute(LngLat start, LngLat dest, boolean outbound, int threads) {
+        if (threads <= 1) {
+            return getRoute(start, dest, outbound);
+        }
+
+        if (!isReachable(start, dest, outbound)) {
+            throw new UnreachableDestinationException(start, dest);
+        }
+
+        ParallelRouteSearch search = new ParallelRouteSearch(this, start, dest, outbound, threads);
+        Route route = search.run();
+        expandedNodes = search.getExpandedNodes();
+
+        // Like the lattice search, only null if the search strays too far from start for the lattice to hold
+        if (route != null) {
+            return route;
+        }
+        logLatticeOverflow(start, dest);
+        return getFloatRoute(start, dest, outbound);
+    }
+
+    /**
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @param outbound: Whether the route is planned with the mirrored central area rule
+     * @return: False if no route can exist, true if one might
+     */
+    private boolean isReachable(LngLat start, LngLat dest, boolean outbound) {
+        // A route planned outbound is one that could be flown back from dest to start under the usual rule
+        return outbound ? connectivity.isReachable(dest, start) : connectivity.isReachable(start, dest);
+    }
+
+    /**
+     * Gets the positions the search goes on to consider after expanding node. Once the drone is underway,
+     * if every direction is open only the most promising one is kept
+     *
+     * @param node: The node being expanded
+     * @param dest: The end point for pathing
+     * @param visited: The nodes expanded so far
+     * @param outbound: Whether the route is planned with the mirrored central area rule
+     * @return: The next nodes to consider, mapped to their value of f(pos)
+     */
+    private HashMap<PathNode, Double> getSuccessors(PathNode node, LngLat dest, Collection<PathNode> visited, boolean outbound) {
+        HashMap<PathNode, Double> successors = getValidAdjacentPoints(node, dest, visited, outbound);
+
+        if (node.prev() == null || successors.size() < ANGLES) {
+            return successors;
+        }
+
+        Map.Entry<PathNode, Double> minPair = Collections.min(successors.entrySet(), Map.Entry.comparingByValue());
+        return new HashMap<>(Map.of(minPair.getKey(), minPair.getValue()));
     }
 
     /**
      * Gets all adjacent points which follow the following restrictions:
-     * - If a point is in the central region, neighbors outside the region are invalid
+     * - If a point is in the central region, neighbors outside the region are invalid (or the other way round,
+     *   if the route is planned outbound)
      * - Neighbouring points must not be within no-fly zones
      *
      * @param point: The point to determine the valid neighbours of
      * @return: The optimal list of moves to make to get from start to dest,
      * as a list of coordinates resulting from taking those steps
      */
-    private HashMap<PathNode, Double> getValidAdjacentPoints(PathNode node, LngLat dest, ArrayList<PathNode> visited) {
+    private HashMap<PathNode, Double> getValidAdjacentPoints(PathNode node, LngLat dest, Collection<PathNode> visited,
+                                                             boolean outbound) {
         HashMap<PathNode, Double> validAdjacent = new HashMap<>();
 
         LngLatHandler lngLatHandler = new LngLatHandler();
@@ -97,41 +328,286 @@ public class PathRouter {
 
             // Ignore any points we've visited before
             if (!visited.contains(next)) {
-                // The following truth table shows the desired results:
-                //
-                // inCentral | nextInCentral | result
-                // ----------+---------------+-------
-                //     false |         false |   true
-                //     false |          true |   true
-                //      true |         false |  false
-                //      true |          true |   true
-                //
-                // This is the same as logical implication, so the following works (as A -> B == ¬A v B)
-                boolean centralValid = !inCentral || lngLatHandler.isInCentralArea(next.curr(), this.centralArea);
-
-                // Streams require variables to be "effectively final", so this copy needs made
-                PathNode finalNext = next;
-
-                // Convert the noFlyZones to a stream, and then use a map to get a stream of booleans which tells us
-                // which regions the point is inside (if any)
-                //
-                // We then apply a reducer, giving true if any of the regions contained the point and false otherwise
-                //
-                // The orElse(true) ensures that if the list of no-fly zones is empty this still works
-                //
-                // Finally the result is negated, so we get validity not invalidity
-                boolean noFlyValid = !Arrays.stream(noFlyZones)
-                        .map(noFlyZone -> lngLatHandler.isInRegion(finalNext.curr(), noFlyZone))
-                        .reduce((a, b) -> a || b)
-                        .orElse(true);
-
-                if (centralValid && noFlyValid) {
+                if (isValidMove(inCentral, next.curr(), lngLatHandler, outbound)) {
                     double g_value = next.step() * SystemConstants.DRONE_MOVE_DISTANCE;
-                    double h_value = lngLatHandler.distanceTo(next.curr(), dest);
-                    validAdjacent.put(next, g_value + h_value);
+                    double h_value = heuristic.estimate(next.curr(), dest);
+                    validAdjacent.put(next, g_value + h_value * (1 + TIE_BREAK));
                 }
             }
         }
         return validAdjacent;
     }
+
+    /**
+     * Searches floating-point positions with the same A* as getLatticeRoute, without any pruning. Positions are
+     * only ever recognised as already reached when they are exactly equal, so this shows how much the lattice
+     * gains from recognising every position reached by a different ordering of the same moves
+     *
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @param outbound: Whether to plan with the mirrored central area rule
+     * @return: The optimal route from start to dest
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    private Route getFloatRoute(LngLat start, LngLat dest, boolean outbound) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+
+        PriorityQueue<Map.Entry<PathNode, Double>> open = new PriorityQueue<>(Map.Entry.comparingByValue());
+        // The node which reached each position in the fewest moves so far, which the route is traced back through
+        HashMap<LngLat, PathNode> bestNodes = new HashMap<>();
+
+        PathNode startNode = new PathNode(start, null, HOVER, 0);
+        open.add(Map.entry(startNode, 0.0));
+        bestNodes.put(start, startNode);
+        expandedNodes = 0;
+
+        while (!open.isEmpty()) {
+            PathNode node = open.poll().getKey();
+
+            // A cheaper way to the same position was found after this one was queued
+            if (bestNodes.get(node.curr()) != node) {continue;}
+
+            expandedNodes++;
+
+            if (lngLatHandler.isCloseTo(node.curr(), dest)) {
+                ArrayList<PathNode> finalPath = new ArrayList<>();
+                finalPath.add(new PathNode(node.curr(), node.curr(), HOVER, node.step() + 1));
+
+                for (; node.prev() != null; node = bestNodes.get(node.prev())) {
+                    finalPath.add(node);
+                }
+
+                return Route.fromBacktrack(finalPath);
+            }
+
+            boolean inCentral = lngLatHandler.isInCentralArea(node.curr(), centralArea);
+
+            for (int direction = 0; direction < MoveLattice.DIRECTIONS; direction++) {
+                double angle = MoveLattice.angleOf(direction);
+                PathNode next = new PathNode(lngLatHandler.nextPosition(node.curr(), angle), node.curr(), angle, node.step() + 1);
+
+                PathNode best = bestNodes.get(next.curr());
+                if (best != null && best.step() <= next.step()) {continue;}
+
+                if (!isValidMove(inCentral, next.curr(), lngLatHandler, outbound)) {continue;}
+
+                bestNodes.put(next.curr(), next);
+
+                double g_value = next.step() * SystemConstants.DRONE_MOVE_DISTANCE;
+                double h_value = heuristic.estimate(next.curr(), dest);
+                open.add(Map.entry(next, g_value + h_value * (1 + TIE_BREAK)));
+            }
+        }
+
+        throw new UnreachableDestinationException(start, dest);
+    }
+
+    /**
+     * Same as getRoute, but searching over MoveLattice positions. As a position reached by two different
+     * sequences of moves has the same key either way, each position is only ever expanded once, with the
+     * fewest moves it can be reached in
+     *
+     * @param start: The start point for pathing
+     * @param dest: The end point for pathing
+     * @param outbound: Whether to plan with the mirrored central area rule
+     * @return: The optimal route from start to dest, or null if the search needed more moves along one axis
+     *          than the lattice can hold. This can happen on a position off the final route, so the search is
+     *          abandoned rather than risk missing a shorter route through it
+     * @throws UnreachableDestinationException: If there is no route from start to dest
+     */
+    private Route getLatticeRoute(LngLat start, LngLat dest, boolean outbound) {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        MoveLattice lattice = new MoveLattice(start);
+
+        PriorityQueue<LatticeNode> open = new PriorityQueue<>(Comparator.comparingDouble(LatticeNode::f));
+        // The fewest moves each position has been reached in so far
+        HashMap<Long, Integer> bestSteps = new HashMap<>();
+        // Whether each position is in the central area or a no-fly zone, as it's reached from many neighbours
+        HashMap<Long, Byte> flags = new HashMap<>();
+
+        open.add(new LatticeNode(MoveLattice.ORIGIN, null, -1, 0, 0));
+        bestSteps.put(MoveLattice.ORIGIN, 0);
+        expandedNodes = 0;
+
+        while (!open.isEmpty()) {
+            LatticeNode node = open.poll();
+
+            // A cheaper way to the same position was found after this one was queued
+            if (node.step() > bestSteps.get(node.key())) {continue;}
+
+            expandedNodes++;
+            LngLat position = lattice.toLngLat(node.key());
+
+            if (lngLatHandler.isCloseTo(position, dest)) {
+                return toRoute(node, lattice);
+            }
+
+            List<LatticeNode> successors = getLatticeSuccessors(node, position, dest, lattice, flags, lngLatHandler,
+                    outbound, key -> !bestSteps.containsKey(key) || bestSteps.get(key) > node.step() + 1);
+
+            if (successors == null) {
+                return null;
+            }
+
+            for (LatticeNode next : successors) {
+                bestSteps.put(next.key(), next.step());
+                open.add(next);
+            }
+        }
+
+        throw new UnreachableDestinationException(start, dest);
+    }
+
+    /**
+     * Gets every position one move on from a lattice node that the drone may move to
+     *
+     * @param node: The node being expanded
+     * @param position: The node's position as a LngLat
+     * @param dest: The end point for pathing
+     * @param lattice: The lattice the search runs over
+     * @param flags: The flags already worked out for each position, which this adds to
+     * @param lngLatHandler: The handler to check the regions with
+     * @param outbound: Whether the route is planned with the mirrored central area rule
+     * @param isWorthVisiting: Whether a position is worth going on to, checked before anything else is worked out
+     *                         for it, so positions already reached as cheaply cost next to nothing
+     * @return: The nodes for the positions, or null if a move would need more moves along one axis than the
+     *          lattice can hold
+     */
+    List<LatticeNode> getLatticeSuccessors(LatticeNode node, LngLat position, LngLat dest, MoveLattice lattice,
+                                           HashMap<Long, Byte> flags, LngLatHandler lngLatHandler, boolean outbound,
+                                           LongPredicate isWorthVisiting) {
+        ArrayList<LatticeNode> successors = new ArrayList<>();
+        boolean inCentral = (positionFlags(node.key(), position, flags, lngLatHandler) & IN_CENTRAL) != 0;
+
+        for (int direction = 0; direction < MoveLattice.DIRECTIONS; direction++) {
+            if (!MoveLattice.canMove(node.key(), direction)) {
+                return null;
+            }
+
+            long key = MoveLattice.move(node.key(), direction);
+            int step = node.step() + 1;
+
+            if (!isWorthVisiting.test(key)) {continue;}
+
+            LngLat next = lattice.toLngLat(key);
+            byte nextFlags = positionFlags(key, next, flags, lngLatHandler);
+
+            // The same rules as isValidMove, read from the cached flags
+            if ((nextFlags & IN_NO_FLY_ZONE) != 0
+                    || !obeysCentralRule(inCentral, (nextFlags & IN_CENTRAL) != 0, outbound)) {continue;}
+
+            double g_value = step * SystemConstants.DRONE_MOVE_DISTANCE;
+            double h_value = heuristic.estimate(next, dest);
+            successors.add(new LatticeNode(key, node, direction, step, g_value + h_value * (1 + TIE_BREAK)));
+        }
+
+        return successors;
+    }
+
+    /**
+     * @param key: The lattice position
+     * @param position: The same position as a LngLat
+     * @param flags: The flags already worked out, which this adds to
+     * @param lngLatHandler: The handler to check the regions with
+     * @return: IN_CENTRAL and IN_NO_FLY_ZONE, set if the position lies in the central area or a no-fly zone
+     */
+    private byte positionFlags(long key, LngLat position, HashMap<Long, Byte> flags, LngLatHandler lngLatHandler) {
+        return flags.computeIfAbsent(key, k -> {
+            byte positionFlags = 0;
+
+            if (lngLatHandler.isInCentralArea(position, centralArea)) {
+                positionFlags |= IN_CENTRAL;
+            }
+            if (isInNoFlyZone(position, lngLatHandler)) {
+                positionFlags |= IN_NO_FLY_ZONE;
+            }
+
+            return positionFlags;
+        });
+    }
+
+    /**
+     * @param goal: The node close to dest that the lattice search finished on
+     * @param lattice: The lattice the search ran over
+     * @return: The route from the start to goal
+     */
+    static Route toRoute(LatticeNode goal, MoveLattice lattice) {
+        int moves = goal.step();
+
+        double[] lngs = new double[moves + 1];
+        double[] lats = new double[moves + 1];
+        double[] angles = new double[moves];
+
+        for (LatticeNode node = goal; node != null; node = node.parent()) {
+            LngLat position = lattice.toLngLat(node.key());
+            lngs[node.step()] = position.lng();
+            lats[node.step()] = position.lat();
+
+            if (node.parent() != null) {
+                angles[node.step() - 1] = MoveLattice.angleOf(node.direction());
+            }
+        }
+
+        return new Route(lngs, lats, angles);
+    }
+
+    /**
+     * Checks a move against the following restrictions:
+     * - If a point is in the central region, neighbors outside the region are invalid (or the other way round,
+     *   if the route is planned outbound)
+     * - Neighbouring points must not be within no-fly zones
+     *
+     * @param inCentral: Whether the move starts in the central area
+     * @param next: Where the move finishes
+     * @param lngLatHandler: The handler to check the regions with
+     * @param outbound: Whether the route is planned with the mirrored central area rule
+     * @return: Whether the drone may make the move
+     */
+    private boolean isValidMove(boolean inCentral, LngLat next, LngLatHandler lngLatHandler, boolean outbound) {
+        return obeysCentralRule(inCentral, lngLatHandler.isInCentralArea(next, this.centralArea), outbound)
+                && !isInNoFlyZone(next, lngLatHandler);
+    }
+
+    /**
+     * @param inCentral: Whether the move starts in the central area
+     * @param nextInCentral: Whether the move finishes in the central area
+     * @param outbound: Whether the route is planned with the mirrored central area rule
+     * @return: Whether the move is allowed by the central area rule
+     */
+    private static boolean obeysCentralRule(boolean inCentral, boolean nextInCentral, boolean outbound) {
+        // An outbound move is allowed if the same move flown backwards would be
+        if (outbound) {
+            return obeysCentralRule(nextInCentral, inCentral, false);
+        }
+
+        // The following truth table shows the desired results:
+        //
+        // inCentral | nextInCentral | result
+        // ----------+---------------+-------
+        //     false |         false |   true
+        //     false |          true |   true
+        //      true |         false |  false
+        //      true |          true |   true
+        //
+        // This is the same as logical implication, so the following works (as A -> B == ¬A v B)
+        return !inCentral || nextInCentral;
+    }
+
+    /**
+     * @param position: The position to check
+     * @param lngLatHandler: The handler to check the regions with
+     * @return: Whether the position lies within any of the no-fly zones
+     */
+    private boolean isInNoFlyZone(LngLat position, LngLatHandler lngLatHandler) {
+        // Convert the noFlyZones to a stream, and then use a map to get a stream of booleans which tells us
+        // which regions the point is inside (if any)
+        //
+        // We then apply a reducer, giving true if any of the regions contained the point and false otherwise
+        //
+        // The orElse(false) ensures that if the list of no-fly zones is empty this still works
+        return Arrays.stream(noFlyZones)
+                .map(noFlyZone -> lngLatHandler.isInRegion(position, noFlyZone))
+                .reduce((a, b) -> a || b)
+                .orElse(false);
+    }
 }
@@ -0,0 +1,106 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces a path to fewer points for drawing, while keeping its shape. Only meant for visualisation,
+ * the full list of moves is always what gets written to the flightpath file
+ */
+public class PathSimplifier {
+    /**
+     * Collapses every run of moves made in the same direction down to the points either end of it
+     *
+     * @param route: The route to simplify, in the direction it is flown
+     * @return: The points where the drone starts, changes direction, and finishes
+     */
+    public static List<LngLat> collapseRuns(Route route) {
+        ArrayList<LngLat> points = new ArrayList<>();
+        points.add(new LngLat(route.fromLng(0), route.fromLat(0)));
+
+        // The final step is the hover, which doesn't move the drone so adds nothing to the line
+        for (int step = 0; step < route.size() - 1; step++) {
+            // A point is only needed where the next step heads off in a different direction, which is
+            // always true of the last move as the hover follows it
+            if (route.angle(step + 1) != route.angle(step)) {
+                points.add(new LngLat(route.toLng(step), route.toLat(step)));
+            }
+        }
+
+        return points;
+    }
+
+    /**
+     * Uses the Douglas-Peucker algorithm to drop points which lie close to the line between their neighbours
+     *
+     * The first and last points are always kept. Of the points in between, the one furthest from the line
+     * joining them is kept if it lies further away than the tolerance, and each half is then simplified
+     * in turn. Otherwise every point in between is dropped
+     *
+     * @param points: The points to simplify
+     * @param tolerance: How far a point may lie from the simplified line, in degrees
+     * @return: The simplified list of points
+     */
+    public static List<LngLat> douglasPeucker(List<LngLat> points, double tolerance) {
+        if (points.size() < 3) {return new ArrayList<>(points);}
+
+        boolean[] keep = new boolean[points.size()];
+        keep[0] = true;
+        keep[points.size() - 1] = true;
+
+        // Sections still to be simplified, as {first index, last index}. Done with a stack rather than
+        // recursion so that very long paths can't overflow the call stack
+        ArrayList<int[]> sections = new ArrayList<>();
+        sections.add(new int[] {0, points.size() - 1});
+
+        while (!sections.isEmpty()) {
+            int[] section = sections.remove(sections.size() - 1);
+            int furthest = -1;
+            double furthestDistance = tolerance;
+
+            for (int i = section[0] + 1; i < section[1]; i++) {
+                double distance = distanceToSegment(points.get(i), points.get(section[0]), points.get(section[1]));
+                if (distance > furthestDistance) {
+                    furthest = i;
+                    furthestDistance = distance;
+                }
+            }
+
+            if (furthest != -1) {
+                keep[furthest] = true;
+                sections.add(new int[] {section[0], furthest});
+                sections.add(new int[] {furthest, section[1]});
+            }
+        }
+
+        ArrayList<LngLat> simplified = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (keep[i]) {simplified.add(points.get(i));}
+        }
+
+        return simplified;
+    }
+
+    /**
+     * @param point: The point to measure from
+     * @param start: One end of the line segment
+     * @param end: The other end of the line segment
+     * @return: The shortest distance from point to any point on the segment
+     */
+    private static double distanceToSegment(LngLat point, LngLat start, LngLat end) {
+        double dLng = end.lng() - start.lng();
+        double dLat = end.lat() - start.lat();
+        double lengthSquared = dLng * dLng + dLat * dLat;
+
+        // How far along the segment the closest point lies, from 0 at start to 1 at end
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((point.lng() - start.lng()) * dLng + (point.lat() - start.lat()) * dLat) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+
+        return new LngLatHandler().distanceTo(point, new LngLat(start.lng() + t * dLng, start.lat() + t * dLat));
+    }
+}
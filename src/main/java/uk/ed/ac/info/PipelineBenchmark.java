@@ -0,0 +1,137 @@
+package uk.ed.ac.info;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Runs the whole pipeline end to end against the LocalRestServer and reports how long it and each stage take,
+ * then checks the number of moves flown for each order against the expected-moves-{date}.json kept with the
+ * fixtures. The moves flown are also written to benchmarkfiles/moves-{date}.json, which can be copied over the
+ * expected moves when a change to the routes is meant
+ */
+public class PipelineBenchmark {
+    /**
+     * @param args: Optionally the date to run (2023-11-04 by default), the number of timed runs (5 by default),
+     *              then a fixture directory to serve instead of the bundled fixtures
+     */
+    public static void main(String[] args) throws IOException {
+        LocalDate date = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.of(2023, 11, 4);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path fixtureDirectory = args.length > 2 ? Path.of(args[2]) : null;
+
+        // Results go to their own directory, so the recorded results in resultfiles/ aren't overwritten
+        String benchmarkDirectory = "benchmarkfiles";
+
+        LocalRestServer server = new LocalRestServer(0, fixtureDirectory);
+        server.start();
+
+        try {
+            OrderPipeline pipeline = new OrderPipeline();
+
+            // The first run warms up the JIT and the HTTP client, so it isn't counted
+            OrderPipeline.PipelineResult result = pipeline.run(date, server.getUrl(), benchmarkDirectory);
+
+            // The wall time of each run, followed by the time each stage spent busy
+            long[][] timings = new long[runs][];
+            for (int run = 0; run < runs; run++) {
+                result = pipeline.run(date, server.getUrl(), benchmarkDirectory);
+
+                timings[run] = new long[result.stages().size() + 1];
+                timings[run][0] = result.wallNanos();
+                for (int stage = 0; stage < result.stages().size(); stage++) {
+                    timings[run][stage + 1] = result.stages().get(stage).busyNanos();
+                }
+            }
+
+            ArrayList<String> rows = new ArrayList<>(List.of("Total"));
+            result.stages().forEach(stage -> rows.add(stage.name()));
+
+            System.out.println();
+            System.out.println("Pipeline timings for " + date + " over " + runs + " runs:");
+            System.out.printf("%-10s %12s %12s%n", "Stage", "Mean (ms)", "Best (ms)");
+
+            for (int row = 0; row < rows.size(); row++) {
+                int finalRow = row;
+                LongSummaryStatistics stats = Arrays.stream(timings).mapToLong(t -> t[finalRow]).summaryStatistics();
+                System.out.printf("%-10s %12.2f %12.2f%n", rows.get(row), stats.getAverage() / 1e6, stats.getMin() / 1e6);
+            }
+
+            // Stages overlap, so their busy times add up to more than the total
+            OrderPipeline.printReport(result);
+
+            // Each route is flown out and back, so gives two legs' worth of moves
+            TreeMap<String, Integer> flownMoves = new TreeMap<>();
+            result.paths().forEach((orderNo, route) -> flownMoves.put(orderNo, 2 * route.size()));
+
+            writeMoves(flownMoves, Path.of(benchmarkDirectory, "moves-" + date + ".json"));
+            compareWithExpected(flownMoves, server, "expected-moves-" + date + ".json");
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * @param flownMoves: The moves flown for each delivered order, keyed by order number
+     * @param file: The file to write them to, as a JSON object
+     */
+    private static void writeMoves(TreeMap<String, Integer> flownMoves, Path file) {
+        JsonObject moves = new JsonObject();
+        flownMoves.forEach(moves::addProperty);
+
+        try (FileWriter writer = new FileWriter(file.toFile())) {
+            IlpJson.PRETTY_GSON.toJson(moves, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Compares the number of moves flown for each order with those expected
+     *
+     * @param flownMoves: The moves flown for each delivered order, keyed by order number
+     * @param server: The server whose fixtures hold the expected moves
+     * @param expectedFile: The name of the fixture holding the expected moves
+     */
+    private static void compareWithExpected(TreeMap<String, Integer> flownMoves, LocalRestServer server,
+                                            String expectedFile) throws IOException {
+        String expectedJson = server.readFixture(expectedFile);
+
+        if (expectedJson == null) {
+            System.out.println("No expected moves to compare against in fixture " + expectedFile);
+            return;
+        }
+
+        HashMap<String, Integer> expectedMoves = new HashMap<>();
+        for (Map.Entry<String, JsonElement> order : JsonParser.parseString(expectedJson).getAsJsonObject().entrySet()) {
+            expectedMoves.put(order.getKey(), order.getValue().getAsInt());
+        }
+
+        int matching = 0;
+        TreeSet<String> orderNos = new TreeSet<>(expectedMoves.keySet());
+        orderNos.addAll(flownMoves.keySet());
+
+        System.out.println();
+        System.out.println("Move counts against fixture " + expectedFile + ":");
+
+        for (String orderNo : orderNos) {
+            Integer expected = expectedMoves.get(orderNo);
+            Integer flown = flownMoves.get(orderNo);
+
+            if (Objects.equals(expected, flown)) {
+                matching++;
+            } else {
+                System.out.printf("    > Order %s: expected %s, flown %s%n", orderNo,
+                        expected == null ? "none" : expected + " moves", flown == null ? "none" : flown + " moves");
+            }
+        }
+
+        System.out.println(matching + "/" + orderNos.size() + " orders match the expected move count");
+    }
+}
@@ -0,0 +1,16 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Constants shared by Main, the pipeline and the benchmarks, alongside those the ILP library gives in SystemConstants
+ */
+public final class PizzaDronzConstants {
+    // Where every delivery starts and finishes
+    public static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+
+    // The REST service used when no other URL is given
+    public static final String DEFAULT_REST_URL = "https://ilp-rest.azurewebsites.net/";
+
+    private PizzaDronzConstants() {}
+}
@@ -1,18 +1,21 @@
 package uk.ed.ac.info;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.ilp.data.Order;
 import uk.ac.ed.inf.ilp.data.Restaurant;
-import uk.ac.ed.inf.ilp.gsonUtils.LocalDateDeserializer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * A class for allowing access to up-to-date information from the REST-API
@@ -24,6 +27,29 @@ public class RestAccess {
         this.url = url;
     }
 
+    /**
+     * Sends a GET request to one of the API's endpoints. HttpURLConnection is used rather than HttpClient, as
+     * setting up an HttpClient loads over a thousand classes, which held up the first request of every run by
+     * most of a second. Connections to the API are kept alive and reused between requests
+     *
+     * @param endpoint: The endpoint, relative to the API's URL
+     * @return: The connection, ready for the response to be read
+     */
+    private HttpURLConnection open(String endpoint) throws IOException {
+        return (HttpURLConnection) URI.create(this.url + endpoint).toURL().openConnection();
+    }
+
+    /**
+     * @param connection: The connection to read the response from
+     * @return: The whole body of the response
+     */
+    private static String readBody(HttpURLConnection connection) throws IOException {
+        // Reading to the end and closing lets the connection be reused for the next request
+        try (InputStream body = connection.getInputStream()) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * Attempts to access the isAlive endpoint to determine the API status
      *
@@ -31,16 +57,10 @@ public class RestAccess {
      */
     public boolean apiAlive() {
         try {
-            // Create a new HTTP Client to access the API endpoint
-            HttpClient client = HttpClient.newBuilder().build();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(this.url + "isAlive"))
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpURLConnection connection = open("isAlive");
 
             // If the status code is 200 and the body contains the string "true", the api is alive and well
-            return Objects.equals(response.body(), "true") && response.statusCode() == 200;
+            return connection.getResponseCode() == 200 && Objects.equals(readBody(connection), "true");
         }
         // If at any point we encounter an error, there is something wrong with the API
         // We report the error and return false
@@ -51,32 +71,39 @@ public class RestAccess {
     }
 
     /**
-     * Attempts to access the restaurants endpoint to determine what restaurants are open
+     * Filters the participating restaurants down to those open on the given date
      *
-     * @return: If the API is alive and there is no error, returns the list of restaurants open on the
-     *          date specified on creation of the RestAccess object, otherwise gives null
+     * @param date: The date the restaurants must be open on
+     * @return: The restaurants open on date, or null if the restaurants couldn't be fetched
      */
     public Restaurant[] getOpenRestaurants(LocalDate date) {
+        Restaurant[] allRestaurants = this.getRestaurants();
+
+        if (allRestaurants == null) {
+            return null;
+        }
+
+        // Open restaurants are ones which contain the current day of the week in their openingDays list
+        // We can filter the restaurants down to those which contain the day of the week
+        return Arrays.stream(allRestaurants)
+                .filter(r -> Arrays.asList(r.openingDays()).contains(date.getDayOfWeek()))
+                .toArray(Restaurant[]::new);
+    }
+
+    /**
+     * Attempts to access the restaurants endpoint to get every participating restaurant
+     *
+     * @return: If the API is alive and there is no error, returns the list of restaurants,
+     *          otherwise gives null
+     */
+    public Restaurant[] getRestaurants() {
         // Check the API is alive, if it isn't throw an error and return null
         if (this.apiAlive()) {
             try {
-                // Create a new HTTP Client to access the restaurants endpoint
-                HttpClient client = HttpClient.newBuilder().build();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(this.url + "restaurants"))
-                        .build();
-
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                String body = readBody(open("restaurants"));
 
                 // Deserialize the response body as a list of Restaurant objects
-                Restaurant[] allRestaurants = new GsonBuilder().create().fromJson(response.body(), Restaurant[].class);
-
-                // Open restaurants are ones which contain the current day of the week in their openingDays list
-                // We can filter the restaurants down to those which contain the day of the week
-                return Arrays.stream(allRestaurants)
-                        .filter(r -> Arrays.asList(r.openingDays()).contains(date.getDayOfWeek()))
-                        .toArray(Restaurant[]::new);
-
+                return IlpJson.GSON.fromJson(body, Restaurant[].class);
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
@@ -88,34 +115,38 @@ public class RestAccess {
     }
 
     /**
-     * Attempts to access the restaurants endpoint to get the list of orders for the objects current date
+     * Attempts to access the orders endpoint to get the orders for a date, handing each order over as soon as it
+     * has been read from the response rather than waiting for the whole list to arrive
      *
-     * @return: If the API is alive and there is no error, returns the list obtained from the API filtered by date,
-     *          otherwise throws an error and returns null
+     * @param date: The date to get the orders for
+     * @param orderConsumer: Given each order in turn, in the order the API lists them
+     * @return: Whether every order was fetched without error
      */
-    public Order[] getOrdersForDate(LocalDate date) {
-        // Check the API is alive, if it isn't throw an error and return null
+    public boolean streamOrdersForDate(LocalDate date, Consumer<Order> orderConsumer) {
+        // Check the API is alive, if it isn't throw an error and return false
         if (this.apiAlive()) {
             try {
-                String dateString = date.toString();
-
-                // Create a new HTTP Client to access the orders endpoint
-                HttpClient client = HttpClient.newBuilder().build();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(this.url + "orders/" + dateString))
-                        .build();
-
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-                // Deserialize the response body as a list of Order objects, utilises LocalDateTypeAdapter
-                return new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateDeserializer()).create().fromJson(response.body(), Order[].class);
+                HttpURLConnection connection = open("orders/" + date);
+
+                // Read the list one order at a time straight off the response body
+                TypeAdapter<Order> orderAdapter = IlpJson.GSON.getAdapter(Order.class);
+                try (JsonReader reader = IlpJson.GSON.newJsonReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        orderConsumer.accept(orderAdapter.read(reader));
+                    }
+                    reader.endArray();
+                }
+
+                return true;
             } catch (Exception e) {
                 e.printStackTrace();
-                return null;
+                return false;
             }
         } else {
             System.err.println("API Dead, try again later");
-            return null;
+            return false;
         }
     }
 
@@ -129,16 +160,10 @@ public class RestAccess {
         // Check the API is alive, if it isn't throw an error and return null
         if (this.apiAlive()) {
             try {
-                 // Create a new HTTP Client to access the orders endpoint
-                HttpClient client = HttpClient.newBuilder().build();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(this.url + "centralArea"))
-                        .build();
-
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                String body = readBody(open("centralArea"));
 
                 // Deserialize the response body as a NamedRegion
-                return new GsonBuilder().create().fromJson(response.body(), NamedRegion.class);
+                return IlpJson.GSON.fromJson(body, NamedRegion.class);
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
@@ -159,16 +184,10 @@ public class RestAccess {
         // Check the API is alive, if it isn't throw an error and return null
         if (this.apiAlive()) {
             try {
-                // Create a new HTTP Client to access the orders endpoint
-                HttpClient client = HttpClient.newBuilder().build();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(this.url + "noFlyZones"))
-                        .build();
-
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                String body = readBody(open("noFlyZones"));
 
                 // Deserialize the response body as a NamedRegion
-                return new GsonBuilder().create().fromJson(response.body(), NamedRegion[].class);
+                return IlpJson.GSON.fromJson(body, NamedRegion[].class);
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
@@ -0,0 +1,151 @@
+package uk.ed.ac.info;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Writes a day's result files one order at a time, so the files can be written while later orders are
+ * still being routed: the deliveries, the flightpath and the drone's GeoJSON, plus a simplified GeoJSON
+ * for viewing on a map if asked for. Records are in the order the orders are written here. Each order is also
+ * added to the delivery archive as it's written, so if the run stops part way the archive still holds every
+ * order written up to then
+ */
+public class ResultWriter implements Closeable {
+    private final OutputProcessor outputProcessor;
+    private final LocalDate date;
+    private final double tolerance;
+    private final TypeAdapter<Order> orderAdapter = IlpJson.PRETTY_GSON.getAdapter(Order.class);
+
+    private final JsonWriter deliveries;
+    private final JsonWriter flightpath;
+    private final JsonWriter pathGeoJson;
+    // Null unless the simplified GeoJSON was asked for
+    private final JsonWriter simplifiedGeoJson;
+
+    // How the orders written so far have gone into the archive
+    private int archived = 0;
+    private int archivedUnchanged = 0;
+    // Set once the archive can't be written to, after which the files carry on without it
+    private boolean archiveFailed = false;
+
+    /**
+     * @param outputProcessor: The processor whose results directory and archive the files go to
+     * @param date: The day the orders are for, which names the files
+     * @param writeSimplified: Whether to also write the simplified GeoJSON
+     * @param tolerance: How far the simplified GeoJSON may stray from the path flown, in degrees
+     */
+    ResultWriter(OutputProcessor outputProcessor, LocalDate date, boolean writeSimplified, double tolerance)
+            throws IOException {
+        this.outputProcessor = outputProcessor;
+        this.date = date;
+        this.tolerance = tolerance;
+
+        Path resultDir = outputProcessor.resultDir;
+
+        this.deliveries = IlpJson.PRETTY_GSON.newJsonWriter(
+                new FileWriter(resultDir.resolve("deliveries-" + date + ".json").toFile()));
+        this.flightpath = IlpJson.PRETTY_GSON.newJsonWriter(
+                new FileWriter(resultDir.resolve("flightpath-" + date + ".json").toFile()));
+        this.pathGeoJson = IlpJson.PRETTY_GSON.newJsonWriter(
+                new FileWriter(resultDir.resolve("drone-" + date + ".geojson").toFile()));
+        // Not pretty printed, as the file is for map tooling rather than people
+        this.simplifiedGeoJson = writeSimplified ? IlpJson.GSON.newJsonWriter(
+                new FileWriter(resultDir.resolve("drone-" + date + "-simplified.geojson").toFile())) : null;
+
+        deliveries.beginArray();
+        flightpath.beginArray();
+        for (JsonWriter geoJson : geoJsonWriters()) {
+            geoJson.beginObject();
+            geoJson.name("type").value("FeatureCollection");
+            geoJson.name("features").beginArray();
+        }
+    }
+
+    /**
+     * Adds an order to every file it belongs in, and to the archive
+     *
+     * @param order: The order, after validation and delivery
+     * @param route: The order's route, planned from Appleton Tower out to the restaurant, or null if it
+     *               wasn't delivered
+     * @param restaurant: The name of the restaurant the order came from, or null if it wasn't delivered
+     */
+    public void write(Order order, Route route, String restaurant) throws IOException {
+        orderAdapter.write(deliveries, order);
+
+        if (route != null) {
+            OutputProcessor.writeFlightpathRecords(flightpath, order.getOrderNo(), route);
+            OutputProcessor.writePathFeature(pathGeoJson, route);
+            if (simplifiedGeoJson != null) {
+                IlpJson.GSON.toJson(OutputProcessor.simplifiedFeature(order.getOrderNo(), route, restaurant, tolerance),
+                        simplifiedGeoJson);
+            }
+        }
+
+        // Only delivered orders are archived with their restaurant, as with the flightpath
+        archive(order, route == null ? null : restaurant);
+    }
+
+    /**
+     * @param order: The order to archive
+     * @param restaurant: The name of the restaurant the order was delivered from, or null if it wasn't
+     */
+    private void archive(Order order, String restaurant) {
+        if (archiveFailed) {return;}
+
+        try {
+            int written = outputProcessor.archiveOrders(date, new Order[] {order},
+                    restaurant == null ? Map.of() : Map.of(order.getOrderNo(), restaurant));
+
+            if (written > 0) {
+                archived++;
+            } else {
+                archivedUnchanged++;
+            }
+        }
+        // The result files matter more than the archive, so they're still written
+        catch (IOException e) {
+            archiveFailed = true;
+            System.err.println("Could not archive order " + order.getOrderNo() + ", the rest of the orders for "
+                    + date + " won't be archived");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finishes off every file. Each order has already been archived as it was written
+     */
+    public void close() throws IOException {
+        deliveries.endArray();
+        flightpath.endArray();
+        for (JsonWriter geoJson : geoJsonWriters()) {
+            geoJson.endArray();
+            geoJson.endObject();
+        }
+
+        deliveries.close();
+        flightpath.close();
+        for (JsonWriter geoJson : geoJsonWriters()) {
+            geoJson.close();
+        }
+        System.out.println("Files created for " + date);
+        System.out.println("Archived " + archived + " orders for " + date
+                + (archivedUnchanged > 0 ? " (" + archivedUnchanged + " already archived unchanged)" : ""));
+    }
+
+    /**
+     * @return: The GeoJSON files being written, which only includes the simplified one if it was asked for
+     */
+    private JsonWriter[] geoJsonWriters() {
+        return simplifiedGeoJson == null
+                ? new JsonWriter[] {pathGeoJson}
+                : new JsonWriter[] {pathGeoJson, simplifiedGeoJson};
+    }
+}
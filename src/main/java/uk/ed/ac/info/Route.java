@@ -0,0 +1,157 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.List;
+
+/**
+ * An immutable route, as the list of steps the drone takes along it. Every move is one step, and the drone
+ * hovers for one final step once it arrives.
+ *
+ * The positions and angles are held in primitive arrays, which the route and its reverse share. So one
+ * route per restaurant can be handed out to every order from it, and the return leg costs nothing extra
+ */
+public final class Route {
+    // The positions the drone passes through in the direction the route was planned, start to end
+    private final double[] lngs;
+    private final double[] lats;
+    // angles[i] is the direction of the move from position i to position i + 1
+    private final double[] angles;
+    private final boolean isReversed;
+    private final Route reverse;
+
+    /**
+     * @param lngs: The longitude of each position along the route, start to end
+     * @param lats: The latitude of each position along the route, start to end
+     * @param angles: The direction of each move, one fewer than there are positions
+     */
+    Route(double[] lngs, double[] lats, double[] angles) {
+        this.lngs = lngs;
+        this.lats = lats;
+        this.angles = angles;
+        this.isReversed = false;
+        this.reverse = new Route(this);
+    }
+
+    private Route(Route reverse) {
+        this.lngs = reverse.lngs;
+        this.lats = reverse.lats;
+        this.angles = reverse.angles;
+        this.isReversed = true;
+        this.reverse = reverse;
+    }
+
+    /**
+     * Builds a route from the nodes found by a search, as it walks back from the goal
+     *
+     * @param backtrack: The final hover, then each move from the last back to the first
+     * @return: The route the nodes describe
+     */
+    static Route fromBacktrack(List<PathNode> backtrack) {
+        int moves = backtrack.size() - 1;
+
+        double[] lngs = new double[moves + 1];
+        double[] lats = new double[moves + 1];
+        double[] angles = new double[moves];
+
+        // The hover sits at the end of the route, and each move records where it came from
+        lngs[moves] = backtrack.get(0).curr().lng();
+        lats[moves] = backtrack.get(0).curr().lat();
+
+        for (int i = 0; i < moves; i++) {
+            PathNode node = backtrack.get(moves - i);
+
+            lngs[i] = node.prev().lng();
+            lats[i] = node.prev().lat();
+            angles[i] = node.angle();
+        }
+
+        return new Route(lngs, lats, angles);
+    }
+
+    /**
+     * @return: The same route flown the other way, sharing this route's storage
+     */
+    public Route reversed() {
+        return reverse;
+    }
+
+    /**
+     * @return: The number of steps along the route, counting the final hover
+     */
+    public int size() {
+        return angles.length + 1;
+    }
+
+    /**
+     * @return: Where the route starts
+     */
+    public LngLat start() {
+        return new LngLat(lng(0), lat(0));
+    }
+
+    /**
+     * @return: Where the route ends
+     */
+    public LngLat end() {
+        return new LngLat(lng(angles.length), lat(angles.length));
+    }
+
+    /**
+     * @param step: The index of the step, from 0 up to size() - 1
+     * @return: The direction of the step, or PathRouter.HOVER for the final hover
+     */
+    public double angle(int step) {
+        if (step == angles.length) {
+            return PathRouter.HOVER;
+        }
+
+        // Flying a move backwards means heading the opposite way, and the angles are all multiples of 22.5
+        // so this is exact
+        return isReversed ? (angles[angles.length - 1 - step] + 180) % 360 : angles[step];
+    }
+
+    /**
+     * @param step: The index of the step
+     * @return: The longitude the drone starts the step at
+     */
+    public double fromLng(int step) {
+        return lng(Math.min(step, angles.length));
+    }
+
+    /**
+     * @param step: The index of the step
+     * @return: The latitude the drone starts the step at
+     */
+    public double fromLat(int step) {
+        return lat(Math.min(step, angles.length));
+    }
+
+    /**
+     * @param step: The index of the step
+     * @return: The longitude the drone finishes the step at
+     */
+    public double toLng(int step) {
+        return lng(Math.min(step + 1, angles.length));
+    }
+
+    /**
+     * @param step: The index of the step
+     * @return: The latitude the drone finishes the step at
+     */
+    public double toLat(int step) {
+        return lat(Math.min(step + 1, angles.length));
+    }
+
+    /**
+     * @param position: The index of the position, counted in the direction this route is flown
+     * @return: The longitude of the position
+     */
+    private double lng(int position) {
+        return lngs[isReversed ? angles.length - position : position];
+    }
+
+    private double lat(int position) {
+        return lats[isReversed ? angles.length - position : position];
+    }
+}
@@ -0,0 +1,122 @@
+package uk.ed.ac.info;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.stream.Collectors;
+
+/**
+ * Times how long Main takes from being launched to making its first REST call, by starting it in a new JVM
+ * against the LocalRestServer. This is the cold start that the shared Gson instances and the AppCDS archive
+ * are there to cut, so a plain launch is compared with one using any JVM options given, e.g.
+ *     java -cp target/PizzaDronz-1.0-SNAPSHOT.jar:libraries/IlpDataObjects.jar uk.ed.ac.info.StartupBenchmark
+ *          5 -XX:SharedArchiveFile=target/pizzadronz.jsa
+ */
+public class StartupBenchmark {
+    private static final String DATE = "2023-11-04";
+
+    /**
+     * @param args: Optionally the number of launches of each kind (5 by default), then the JVM options to compare
+     *              against a plain launch. Main runs in a scratch directory, so any paths in the options are
+     *              resolved against the directory this is run from
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> options = Arrays.stream(args).skip(1).map(StartupBenchmark::absoluteOption).toList();
+
+        LocalRestServer server = new LocalRestServer(0);
+        server.start();
+
+        // Main writes its result files to its working directory, which mustn't be the real results directory
+        Path workingDirectory = Files.createTempDirectory("startup");
+
+        try {
+            System.out.printf("%-12s %16s %16s %16s%n", "Launch", "First call (ms)", "Best (ms)", "Exit (ms)");
+            launch(server, workingDirectory, "Plain", List.of(), runs);
+
+            if (!options.isEmpty()) {
+                System.out.println("With: " + String.join(" ", options));
+                launch(server, workingDirectory, "With options", options, runs);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Launches Main the given number of times and prints how long it took to make its first REST call and to
+     * finish, on average
+     *
+     * @param server: The server Main is pointed at
+     * @param workingDirectory: The directory Main runs in
+     * @param name: What to call this kind of launch in the report
+     * @param options: The JVM options to launch with
+     * @param runs: The number of launches
+     */
+    private static void launch(LocalRestServer server, Path workingDirectory, String name, List<String> options,
+                               int runs) throws IOException, InterruptedException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options);
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        command.add(Main.class.getName());
+        command.add(DATE);
+        command.add(server.getUrl());
+
+        LongSummaryStatistics firstCall = new LongSummaryStatistics();
+        LongSummaryStatistics exit = new LongSummaryStatistics();
+
+        for (int run = 0; run < runs; run++) {
+            server.takeFirstRequestNanos();
+
+            long launched = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .directory(workingDirectory.toFile())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            int status = process.waitFor();
+            long exited = System.nanoTime();
+
+            long firstRequest = server.takeFirstRequestNanos();
+            if (status != 0 || firstRequest == 0) {
+                throw new RuntimeException("Main exited with status " + status
+                        + (firstRequest == 0 ? " without calling the server" : ""));
+            }
+
+            firstCall.accept(firstRequest - launched);
+            exit.accept(exited - launched);
+        }
+
+        System.out.printf("%-12s %16.1f %16.1f %16.1f%n", name, firstCall.getAverage() / 1e6,
+                firstCall.getMin() / 1e6, exit.getAverage() / 1e6);
+    }
+
+    /**
+     * @return: This JVM's class path with every entry made absolute, so Main can be launched from anywhere
+     */
+    private static String absoluteClassPath() {
+        return Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .map(entry -> Path.of(entry).toAbsolutePath().toString())
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /**
+     * @param option: A JVM option
+     * @return: The option, with the file it names made absolute if it's one of the options naming a CDS archive
+     */
+    private static String absoluteOption(String option) {
+        for (String prefix : new String[] {"-XX:SharedArchiveFile=", "-XX:ArchiveClassesAtExit="}) {
+            if (option.startsWith(prefix)) {
+                return prefix + Path.of(option.substring(prefix.length())).toAbsolutePath();
+            }
+        }
+        return option;
+    }
+}
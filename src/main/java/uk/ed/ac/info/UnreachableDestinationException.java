@@ -0,0 +1,15 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Thrown by the PathRouter when no route can exist between the requested points, either because the
+ * destination is cut off by no-fly zones or because reaching it would mean leaving the central area
+ */
+public class UnreachableDestinationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UnreachableDestinationException(LngLat start, LngLat dest) {
+        super("No route exists from " + start + " to " + dest);
+    }
+}
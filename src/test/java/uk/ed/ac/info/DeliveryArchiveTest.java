@@ -0,0 +1,274 @@
+package uk.ed.ac.info;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.constant.OrderStatus;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.CreditCardInformation;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Pizza;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeliveryArchiveTest {
+    private static final LocalDate MONDAY = LocalDate.of(2023, 11, 6);
+    private static final LocalDate TUESDAY = LocalDate.of(2023, 11, 7);
+
+    @TempDir
+    Path directory;
+
+    private static Order order(String orderNo, LocalDate date, OrderStatus status, OrderValidationCode code) {
+        return new Order(orderNo, date, status, code, 2500,
+                new Pizza[] {new Pizza("R1: Margarita", 1000), new Pizza("R1: Calzone", 1400)},
+                new CreditCardInformation("4485959141852684", "10/25", "816"));
+    }
+
+    private static Order delivered(String orderNo, LocalDate date) {
+        return order(orderNo, date, OrderStatus.DELIVERED, OrderValidationCode.NO_ERROR);
+    }
+
+    private static List<String> orderNumbers(List<Order> orders) {
+        return orders.stream().map(Order::getOrderNo).toList();
+    }
+
+    private Path segment(LocalDate date) {
+        return directory.resolve("segment-" + date + ".bin");
+    }
+
+    private Path index(LocalDate date) {
+        return directory.resolve("segment-" + date + ".idx");
+    }
+
+    @Test
+    public void ordersCanBeFoundAfterReopening() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {
+                delivered("A1", MONDAY),
+                order("A2", MONDAY, OrderStatus.INVALID, OrderValidationCode.CVV_INVALID)
+        }, Map.of("A1", "Civerinos Slice"));
+        archive.append(TUESDAY, new Order[] {delivered("B1", TUESDAY)}, Map.of("B1", "Sora Lella Vegan Restaurant"));
+
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+
+        assertEquals(OrderStatus.DELIVERED, reopened.findOrder("A1").getOrderStatus());
+        assertEquals(OrderValidationCode.CVV_INVALID, reopened.findOrder("A2").getOrderValidationCode());
+        assertNull(reopened.findOrder("C1"));
+
+        assertEquals(List.of("A1", "A2", "B1"), orderNumbers(reopened.findByDate(MONDAY, TUESDAY)));
+        assertEquals(List.of("B1"), orderNumbers(reopened.findByDate(TUESDAY, TUESDAY)));
+        assertEquals(List.of("A1", "B1"), orderNumbers(reopened.findByStatus(OrderStatus.DELIVERED, MONDAY, TUESDAY)));
+        assertEquals(List.of("A2"),
+                orderNumbers(reopened.findByValidationCode(OrderValidationCode.CVV_INVALID, MONDAY, TUESDAY)));
+        assertEquals(List.of("A1"), orderNumbers(reopened.findByRestaurant("Civerinos Slice", MONDAY, TUESDAY)));
+    }
+
+    @Test
+    public void newerRecordSupersedesOlder() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {
+                order("A1", MONDAY, OrderStatus.VALID_BUT_NOT_DELIVERED, OrderValidationCode.NO_ERROR),
+                delivered("A2", MONDAY)
+        }, Map.of());
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY)}, Map.of());
+
+        // Both the archive that appended and a fresh one should only see the newer record
+        for (DeliveryArchive opened : List.of(archive, new DeliveryArchive(directory))) {
+            assertEquals(OrderStatus.DELIVERED, opened.findOrder("A1").getOrderStatus());
+            assertEquals(List.of(),
+                    opened.findByStatus(OrderStatus.VALID_BUT_NOT_DELIVERED, MONDAY, MONDAY));
+            assertEquals(List.of("A2", "A1"), orderNumbers(opened.findByStatus(OrderStatus.DELIVERED, MONDAY, MONDAY)));
+            assertEquals(List.of("A2", "A1"), orderNumbers(opened.findByDate(MONDAY, MONDAY)));
+        }
+    }
+
+    @Test
+    public void partialRecordAtTheEndIsCutOff() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY), delivered("A2", MONDAY)}, Map.of());
+        long complete = Files.size(segment(MONDAY));
+
+        // An append interrupted part way through leaves the start of a record, longer than what follows it
+        Files.write(segment(MONDAY), new byte[] {0, 0, 1, 0, 3, 0, 0}, StandardOpenOption.APPEND);
+
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+        assertEquals(List.of("A1", "A2"), orderNumbers(reopened.findByDate(MONDAY, MONDAY)));
+        assertEquals(complete, Files.size(segment(MONDAY)));
+
+        // The archive carries on from the last complete record
+        reopened.append(MONDAY, new Order[] {delivered("A3", MONDAY)}, Map.of());
+        assertEquals(List.of("A1", "A2", "A3"), orderNumbers(new DeliveryArchive(directory).findByDate(MONDAY, MONDAY)));
+    }
+
+    @Test
+    public void indexCoveringMoreThanTheSegmentIsRebuilt() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY)}, Map.of());
+        long complete = Files.size(segment(MONDAY));
+        archive.append(MONDAY, new Order[] {delivered("A2", MONDAY)}, Map.of());
+
+        // Cut into the second record, leaving an index file which still lists it
+        try (FileChannel channel = FileChannel.open(segment(MONDAY), StandardOpenOption.WRITE)) {
+            channel.truncate(complete + 5);
+        }
+
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+        assertEquals(List.of("A1"), orderNumbers(reopened.findByDate(MONDAY, MONDAY)));
+        assertNull(reopened.findOrder("A2"));
+        assertEquals(complete, Files.size(segment(MONDAY)));
+    }
+
+    @Test
+    public void missingOrDamagedIndexFileIsRebuilt() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY)}, Map.of("A1", "Civerinos Slice"));
+        archive.append(TUESDAY, new Order[] {delivered("B1", TUESDAY)}, Map.of("B1", "Civerinos Slice"));
+
+        Files.delete(index(MONDAY));
+        Files.write(index(TUESDAY), new byte[] {1, 2, 3});
+
+        // Listing a day is what reads its index file
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+        assertEquals(List.of("A1", "B1"), orderNumbers(reopened.findByDate(MONDAY, TUESDAY)));
+        assertTrue(Files.exists(index(MONDAY)));
+        assertEquals(List.of("A1", "B1"),
+                orderNumbers(reopened.findByRestaurant("Civerinos Slice", MONDAY, TUESDAY)));
+    }
+
+    @Test
+    public void lookupsDoNotReadEachDaysIndexFile() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY)}, Map.of("A1", "Civerinos Slice"));
+        archive.append(TUESDAY, new Order[] {
+                order("B1", TUESDAY, OrderStatus.INVALID, OrderValidationCode.CVV_INVALID)
+        }, Map.of());
+
+        Files.delete(index(MONDAY));
+        Files.delete(index(TUESDAY));
+
+        // Had any of these read a day's index file, they'd have written it again
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+        assertEquals(OrderStatus.DELIVERED, reopened.findOrder("A1").getOrderStatus());
+        assertEquals(List.of("A1"), orderNumbers(reopened.findByRestaurant("Civerinos Slice", MONDAY, TUESDAY)));
+        assertEquals(List.of("B1"),
+                orderNumbers(reopened.findByValidationCode(OrderValidationCode.CVV_INVALID, MONDAY, TUESDAY)));
+        assertFalse(Files.exists(index(MONDAY)));
+        assertFalse(Files.exists(index(TUESDAY)));
+    }
+
+    @Test
+    public void missingOrDamagedArchiveIndexIsRebuilt() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY)}, Map.of("A1", "Civerinos Slice"));
+        archive.append(TUESDAY, new Order[] {delivered("B1", TUESDAY)}, Map.of("B1", "Civerinos Slice"));
+
+        Files.deleteIfExists(directory.resolve("index.bin"));
+        Files.write(directory.resolve("index.log"), new byte[] {1, 2, 3});
+        assertEquals(List.of("A1", "B1"),
+                orderNumbers(new DeliveryArchive(directory).findByRestaurant("Civerinos Slice", MONDAY, TUESDAY)));
+
+        Files.write(directory.resolve("index.bin"), new byte[] {4, 5, 6});
+        Files.delete(directory.resolve("index.log"));
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+        assertEquals(List.of("A1", "B1"),
+                orderNumbers(reopened.findByRestaurant("Civerinos Slice", MONDAY, TUESDAY)));
+        assertEquals(OrderStatus.DELIVERED, reopened.findOrder("B1").getOrderStatus());
+    }
+
+    @Test
+    public void dayAppendedAfterTheArchiveIndexIsIndexedOnOpening() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, new Order[] {delivered("A1", MONDAY)}, Map.of());
+        byte[] log = Files.readAllBytes(directory.resolve("index.log"));
+        archive.append(MONDAY, new Order[] {delivered("A2", MONDAY)}, Map.of());
+        archive.append(TUESDAY, new Order[] {delivered("B1", TUESDAY)}, Map.of());
+
+        // As if the run had stopped after writing the segments but before adding them to the ArchiveIndex
+        Files.write(directory.resolve("index.log"), log);
+
+        DeliveryArchive reopened = new DeliveryArchive(directory);
+        assertEquals(OrderStatus.DELIVERED, reopened.findOrder("A2").getOrderStatus());
+        assertEquals(List.of("A1", "A2", "B1"),
+                orderNumbers(reopened.findByStatus(OrderStatus.DELIVERED, MONDAY, TUESDAY)));
+    }
+
+    @Test
+    public void longLogIsFoldedIntoTheBase() throws IOException {
+        DeliveryArchive archive = new DeliveryArchive(directory);
+
+        // Each order adds three entries, as it has no restaurant, and each append a length as well
+        int orders = ArchiveIndex.MAX_LOG_ENTRIES / 3 + 1;
+        for (int i = 0; i < orders; i++) {
+            LocalDate date = MONDAY.plusDays(i % 10);
+            archive.append(date, new Order[] {delivered("A" + i, date)}, Map.of());
+        }
+
+        assertTrue(Files.exists(directory.resolve("index.bin")));
+        assertTrue(Files.size(directory.resolve("index.log")) < Files.size(directory.resolve("index.bin")));
+
+        for (DeliveryArchive opened : List.of(archive, new DeliveryArchive(directory))) {
+            for (int i = 0; i < orders; i++) {
+                assertNotNull(opened.findOrder("A" + i), "A" + i);
+            }
+            assertEquals(orders, opened.findByStatus(OrderStatus.DELIVERED, MONDAY, MONDAY.plusDays(9)).size());
+        }
+    }
+
+    @Test
+    public void unchangedOrdersAreNotWrittenAgain() throws IOException {
+        Order[] orders = {delivered("A1", MONDAY), delivered("A2", MONDAY)};
+
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        assertEquals(2, archive.append(MONDAY, orders, Map.of()));
+        long size = Files.size(segment(MONDAY));
+
+        // As when a day is re-run with nothing changed
+        assertEquals(0, new DeliveryArchive(directory).append(MONDAY, orders, Map.of()));
+        assertEquals(size, Files.size(segment(MONDAY)));
+
+        // Only the order that did change is written
+        Order[] changed = {delivered("A1", MONDAY),
+                order("A2", MONDAY, OrderStatus.INVALID, OrderValidationCode.TOTAL_INCORRECT)};
+        assertEquals(1, new DeliveryArchive(directory).append(MONDAY, changed, Map.of()));
+        assertEquals(OrderStatus.INVALID, new DeliveryArchive(directory).findOrder("A2").getOrderStatus());
+    }
+
+    @Test
+    public void segmentIsCompactedOnceMostlySuperseded() throws IOException {
+        Order[] valid = {
+                order("A1", MONDAY, OrderStatus.VALID_BUT_NOT_DELIVERED, OrderValidationCode.NO_ERROR),
+                order("A2", MONDAY, OrderStatus.VALID_BUT_NOT_DELIVERED, OrderValidationCode.NO_ERROR)
+        };
+        Order[] delivered = {delivered("A1", MONDAY), delivered("A2", MONDAY)};
+
+        DeliveryArchive archive = new DeliveryArchive(directory);
+        archive.append(MONDAY, valid, Map.of());
+        archive.append(MONDAY, delivered, Map.of());
+        // Two live records and two superseded, so nothing to compact yet
+        archive.append(TUESDAY, new Order[] {delivered("B1", TUESDAY)}, Map.of());
+        archive.findByDate(MONDAY, TUESDAY);
+
+        archive.append(MONDAY, valid, Map.of());
+
+        // Four superseded records outnumber the two live ones, so only the latest two should be left, taking up
+        // the same space as if they'd been the only ones ever archived
+        Path fresh = directory.resolve("fresh");
+        new DeliveryArchive(fresh).append(MONDAY, valid, Map.of());
+        assertEquals(Files.size(fresh.resolve("segment-" + MONDAY + ".bin")), Files.size(segment(MONDAY)));
+
+        for (DeliveryArchive opened : List.of(archive, new DeliveryArchive(directory))) {
+            assertEquals(List.of("A1", "A2", "B1"), orderNumbers(opened.findByDate(MONDAY, TUESDAY)));
+            assertEquals(List.of("A1", "A2"),
+                    orderNumbers(opened.findByStatus(OrderStatus.VALID_BUT_NOT_DELIVERED, MONDAY, TUESDAY)));
+            assertEquals(List.of("B1"), orderNumbers(opened.findByStatus(OrderStatus.DELIVERED, MONDAY, TUESDAY)));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package uk.ed.ac.info;
+
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fixtures bundled for LocalRestServer, so routing can be tested against the recorded airspace
+ * without going through the server
+ */
+class Fixtures {
+    static NamedRegion centralArea() {
+        return read("centralArea.json", NamedRegion.class);
+    }
+
+    static NamedRegion[] noFlyZones() {
+        return read("noFlyZones.json", NamedRegion[].class);
+    }
+
+    static Restaurant[] restaurants() {
+        return read("restaurants.json", Restaurant[].class);
+    }
+
+    private static <T> T read(String name, Class<T> type) {
+        try (InputStream input = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (input == null) {
+                throw new IllegalStateException("No bundled fixture " + name);
+            }
+            return IlpJson.GSON.fromJson(new InputStreamReader(input, StandardCharsets.UTF_8), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
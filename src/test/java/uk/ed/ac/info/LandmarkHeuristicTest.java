@@ -0,0 +1,63 @@
+package uk.ed.ac.info;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ed.ac.info.PizzaDronzConstants.APPLETON_TOWER;
+
+public class LandmarkHeuristicTest {
+    private final NamedRegion centralArea = Fixtures.centralArea();
+    private final NamedRegion[] noFlyZones = Fixtures.noFlyZones();
+
+    // The straight-line distance can never overestimate, so the routes it finds are known to be optimal
+    private final PathRouter euclidean = new PathRouter(centralArea, noFlyZones, new EuclideanHeuristic());
+    private final PathRouter landmark = new PathRouter(centralArea, noFlyZones,
+            new LandmarkHeuristic(centralArea, noFlyZones));
+
+    @Test
+    public void outboundRoutesAreAsShortAsWithEuclidean() {
+        for (Restaurant restaurant : Fixtures.restaurants()) {
+            assertEquals(euclidean.getOutboundRoute(APPLETON_TOWER, restaurant.location()).size(),
+                    landmark.getOutboundRoute(APPLETON_TOWER, restaurant.location()).size(), restaurant.name());
+        }
+    }
+
+    @Test
+    public void routesBackAreAsShortAsWithEuclidean() {
+        // Flown the usual way round, finishing inside the central area, so the routes follow the no-fly zones
+        // from the other side
+        for (Restaurant restaurant : Fixtures.restaurants()) {
+            assertEquals(euclidean.getRoute(restaurant.location(), APPLETON_TOWER).size(),
+                    landmark.getRoute(restaurant.location(), APPLETON_TOWER).size(), restaurant.name());
+        }
+    }
+
+    @Test
+    public void estimateNeverExceedsTheMovesLeft() {
+        LandmarkHeuristic heuristic = new LandmarkHeuristic(centralArea, noFlyZones);
+
+        // Along an optimal route, every position is exactly as many moves from the end as the route has left
+        for (Restaurant restaurant : Fixtures.restaurants()) {
+            assertAdmissibleAlong(heuristic, euclidean.getOutboundRoute(APPLETON_TOWER, restaurant.location()),
+                    restaurant.location(), restaurant.name() + " outbound");
+            assertAdmissibleAlong(heuristic, euclidean.getRoute(restaurant.location(), APPLETON_TOWER),
+                    APPLETON_TOWER, restaurant.name() + " back");
+        }
+    }
+
+    private static void assertAdmissibleAlong(Heuristic heuristic, Route route, LngLat dest, String name) {
+        // The last step is the hover, which doesn't go anywhere
+        int moves = route.size() - 1;
+
+        for (int step = 0; step <= moves; step++) {
+            LngLat position = new LngLat(route.fromLng(step), route.fromLat(step));
+            double movesLeft = (moves - step) * SystemConstants.DRONE_MOVE_DISTANCE;
+
+            assertTrue(heuristic.estimate(position, dest) <= movesLeft + 1e-12, name + " at step " + step);
+        }
+    }
+}
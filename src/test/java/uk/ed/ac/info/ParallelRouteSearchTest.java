@@ -0,0 +1,45 @@
+package uk.ed.ac.info;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ed.ac.info.PizzaDronzConstants.APPLETON_TOWER;
+
+public class ParallelRouteSearchTest {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    private final NamedRegion centralArea = Fixtures.centralArea();
+    private final NamedRegion[] noFlyZones = Fixtures.noFlyZones();
+
+    /**
+     * Routes out to every restaurant at each thread count, checking the route costs the same as the sequential one
+     *
+     * @param heuristic: The heuristic to search with
+     */
+    private void assertSameCostAsSequential(Heuristic heuristic) {
+        PathRouter router = new PathRouter(centralArea, noFlyZones, heuristic);
+
+        for (Restaurant restaurant : Fixtures.restaurants()) {
+            int sequentialMoves = router.getOutboundRoute(APPLETON_TOWER, restaurant.location()).size();
+
+            for (int threads : THREAD_COUNTS) {
+                Route route = router.getOutboundRoute(APPLETON_TOWER, restaurant.location(), threads);
+
+                assertEquals(sequentialMoves, route.size(), restaurant.name() + " with " + threads + " threads");
+                assertEquals(APPLETON_TOWER, route.start());
+            }
+        }
+    }
+
+    @Test
+    public void euclideanRoutesCostTheSameAsSequential() {
+        assertSameCostAsSequential(new EuclideanHeuristic());
+    }
+
+    @Test
+    public void landmarkRoutesCostTheSameAsSequential() {
+        assertSameCostAsSequential(new LandmarkHeuristic(centralArea, noFlyZones));
+    }
+}
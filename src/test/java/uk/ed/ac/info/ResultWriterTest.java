@@ -0,0 +1,49 @@
+package uk.ed.ac.info;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ed.inf.ilp.constant.OrderStatus;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.data.CreditCardInformation;
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.ilp.data.Pizza;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultWriterTest {
+    private static final LocalDate DATE = LocalDate.of(2023, 11, 4);
+
+    @TempDir
+    Path directory;
+
+    private static Order order(String orderNo, OrderStatus status, OrderValidationCode code) {
+        return new Order(orderNo, DATE, status, code, 1100,
+                new Pizza[] {new Pizza("R1: Margarita", 1000)},
+                new CreditCardInformation("4485959141852684", "10/25", "816"));
+    }
+
+    @Test
+    public void ordersAreArchivedAsTheyAreWritten() throws IOException {
+        OutputProcessor outputProcessor = new OutputProcessor(directory.toString());
+        ResultWriter resultWriter = outputProcessor.openResultFiles(DATE, false, 0);
+        Route route = new Route(new double[] {-3.186874, -3.186724}, new double[] {55.944494, 55.944494},
+                new double[] {0});
+
+        resultWriter.write(order("A1", OrderStatus.INVALID, OrderValidationCode.CVV_INVALID), null, null);
+        resultWriter.write(order("A2", OrderStatus.DELIVERED, OrderValidationCode.NO_ERROR), route, "Civerinos Slice");
+
+        // As if the run had stopped before the day was finished, the archive is read before the writer is closed
+        DeliveryArchive archive = new DeliveryArchive(directory.resolve("archive"));
+
+        assertEquals(OrderStatus.INVALID, archive.findOrder("A1").getOrderStatus());
+        assertEquals(List.of("A2"), archive.findByRestaurant("Civerinos Slice", DATE, DATE).stream()
+                .map(Order::getOrderNo).toList());
+
+        resultWriter.close();
+    }
+}